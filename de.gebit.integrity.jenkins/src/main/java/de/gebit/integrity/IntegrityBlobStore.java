@@ -0,0 +1,281 @@
+/*******************************************************************************
+ * Copyright (c) 2026 agent and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package de.gebit.integrity;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * The content-addressed store for the raw data of results, shared by all builds of a job. Every distinct raw data blob
+ * is stored once, in a file named after the SHA-256 hash of its stored (compressed) form, so identical reports of
+ * different builds take up disk space only once. Each blob has a reference count, which is increased for every result
+ * referencing it and decreased when the build of such a result is deleted; blobs which are no longer referenced are
+ * deleted.
+ * <p>
+ * Besides raw data, the store keeps the stylesheets split out of it (see {@link IntegrityStylesheetSplitter}).
+ *
+ * @author agent - initial API and implementation
+ */
+public final class IntegrityBlobStore {
+
+	/**
+	 * The name of the directory in the job directory which contains the blobs.
+	 */
+	private static final String DIRECTORY_NAME = "integrityBlobs";
+
+	/**
+	 * The suffix of the files containing the reference counts.
+	 */
+	private static final String REFERENCE_COUNT_SUFFIX = ".refs";
+
+	/**
+	 * The locks guarding the reference counts and the existence of blobs, by job directory. Blobs are written before
+	 * the lock is taken, so it is only held briefly.
+	 */
+	private static final ConcurrentMap<File, Object> LOCKS = new ConcurrentHashMap<File, Object>();
+
+	private IntegrityBlobStore() {
+		// static methods only
+	}
+
+	/**
+	 * Returns the blob store directory of a job.
+	 *
+	 * @param aJobDirectory
+	 *            the directory of the job
+	 * @return the directory
+	 */
+	public static File getDirectory(File aJobDirectory) {
+		return new File(aJobDirectory, DIRECTORY_NAME);
+	}
+
+	/**
+	 * Returns the file containing a blob.
+	 *
+	 * @param aJobDirectory
+	 *            the directory of the job
+	 * @param aHash
+	 *            the hash of the blob
+	 * @return the file
+	 */
+	public static File getBlobFile(File aJobDirectory, String aHash) {
+		if (!aHash.matches("[0-9a-f]+")) {
+			throw new IllegalArgumentException("Not a blob hash: " + aHash);
+		}
+		return new File(getDirectory(aJobDirectory), aHash);
+	}
+
+	/**
+	 * Adds a reference to the raw data of the given result, storing it if it's not yet in the store.
+	 *
+	 * @param aJobDirectory
+	 *            the directory of the job
+	 * @param aResult
+	 *            the result, which must have raw data
+	 * @return the hash of the blob
+	 * @throws IOException
+	 */
+	public static String addReference(File aJobDirectory, final IntegrityTestResult aResult) throws IOException {
+		return addReference(aJobDirectory, new Source() {
+
+			@Override
+			public InputStream open() throws IOException {
+				return aResult.openStoredRawData();
+			}
+		});
+	}
+
+	/**
+	 * Adds a reference to the stylesheet split out of the raw data of the given result, storing it if it's not yet in
+	 * the store. Since all reports embed the same stylesheet, it's usually stored just once per job.
+	 *
+	 * @param aJobDirectory
+	 *            the directory of the job
+	 * @param aResult
+	 *            the result, which must have a stylesheet
+	 * @return the hash of the blob
+	 * @throws IOException
+	 */
+	public static String addStylesheetReference(File aJobDirectory, final IntegrityTestResult aResult)
+			throws IOException {
+		return addReference(aJobDirectory, new Source() {
+
+			@Override
+			public InputStream open() throws IOException {
+				return aResult.openStylesheet();
+			}
+		});
+	}
+
+	private static String addReference(File aJobDirectory, Source aSource) throws IOException {
+		String tempHash;
+		try (InputStream tempIn = new DigestInputStream(aSource.open(), createDigest())) {
+			IOUtils.skip(tempIn, Long.MAX_VALUE);
+			tempHash = toHex(((DigestInputStream) tempIn).getMessageDigest().digest());
+		}
+
+		File tempBlobFile = getBlobFile(aJobDirectory, tempHash);
+		Object tempLock = getLock(aJobDirectory);
+		synchronized (tempLock) {
+			if (incrementExistingReferenceCount(tempBlobFile)) {
+				return tempHash;
+			}
+		}
+
+		// Written without holding the lock, so other builds of the job aren't blocked meanwhile. Each writer has its
+		// own temporary file; if another one stores the same blob first, this copy is simply discarded.
+		tempBlobFile.getParentFile().mkdirs();
+		File tempTempFile = File.createTempFile(tempHash, ".tmp", tempBlobFile.getParentFile());
+		try {
+			try (InputStream tempIn = aSource.open(); OutputStream tempOut = new FileOutputStream(tempTempFile)) {
+				IOUtils.copy(tempIn, tempOut);
+			}
+
+			synchronized (tempLock) {
+				if (!incrementExistingReferenceCount(tempBlobFile)) {
+					Files.move(tempTempFile.toPath(), tempBlobFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+							StandardCopyOption.ATOMIC_MOVE);
+					writeReferenceCount(tempBlobFile, 1);
+				}
+			}
+		} finally {
+			Files.deleteIfExists(tempTempFile.toPath());
+		}
+
+		return tempHash;
+	}
+
+	/**
+	 * Adds a reference to a blob if it is already stored. Must be called while holding the lock of the job.
+	 *
+	 * @return true if the blob is stored, false if it must be written
+	 */
+	private static boolean incrementExistingReferenceCount(File aBlobFile) throws IOException {
+		int tempCount = readReferenceCount(aBlobFile);
+		if (tempCount == 0 || !aBlobFile.exists()) {
+			return false;
+		}
+		writeReferenceCount(aBlobFile, tempCount + 1);
+		return true;
+	}
+
+	private static Object getLock(File aJobDirectory) {
+		Object tempLock = LOCKS.get(aJobDirectory);
+		if (tempLock == null) {
+			Object tempNewLock = new Object();
+			tempLock = LOCKS.putIfAbsent(aJobDirectory, tempNewLock);
+			if (tempLock == null) {
+				tempLock = tempNewLock;
+			}
+		}
+		return tempLock;
+	}
+
+	/**
+	 * Removes references to blobs, deleting the blobs which are no longer referenced at all.
+	 *
+	 * @param aJobDirectory
+	 *            the directory of the job
+	 * @param someHashes
+	 *            the hashes of the blobs, once per reference
+	 */
+	public static void removeReferences(File aJobDirectory, Collection<String> someHashes) {
+		synchronized (getLock(aJobDirectory)) {
+			for (String tempHash : someHashes) {
+				File tempBlobFile = getBlobFile(aJobDirectory, tempHash);
+				try {
+					int tempCount = readReferenceCount(tempBlobFile) - 1;
+					if (tempCount > 0) {
+						writeReferenceCount(tempBlobFile, tempCount);
+					} else {
+						Files.deleteIfExists(tempBlobFile.toPath());
+						Files.deleteIfExists(getReferenceCountFile(tempBlobFile).toPath());
+					}
+				} catch (IOException exc) {
+					exc.printStackTrace();
+				}
+			}
+		}
+	}
+
+	private static File getReferenceCountFile(File aBlobFile) {
+		return new File(aBlobFile.getParentFile(), aBlobFile.getName() + REFERENCE_COUNT_SUFFIX);
+	}
+
+	private static int readReferenceCount(File aBlobFile) throws IOException {
+		File tempFile = getReferenceCountFile(aBlobFile);
+		if (!tempFile.exists()) {
+			return 0;
+		}
+		String tempCount = new String(Files.readAllBytes(tempFile.toPath()), StandardCharsets.US_ASCII);
+		try {
+			return Integer.parseInt(tempCount.trim());
+		} catch (NumberFormatException exc) {
+			throw new IOException(tempFile + " is corrupt", exc);
+		}
+	}
+
+	private static void writeReferenceCount(File aBlobFile, int aCount) throws IOException {
+		File tempFile = getReferenceCountFile(aBlobFile);
+		File tempTempFile = new File(tempFile.getParentFile(), tempFile.getName() + ".tmp");
+		try {
+			Files.write(tempTempFile.toPath(), Integer.toString(aCount).getBytes(StandardCharsets.US_ASCII));
+			Files.move(tempTempFile.toPath(), tempFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(tempTempFile.toPath());
+		}
+	}
+
+	private static MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException exc) {
+			// SHA-256 is guaranteed to exist in every JRE
+			throw new RuntimeException(exc);
+		}
+	}
+
+	private static String toHex(byte[] someBytes) {
+		StringBuilder tempBuilder = new StringBuilder();
+		for (byte tempByte : someBytes) {
+			tempBuilder.append(String.format("%02x", tempByte & 0xFF));
+		}
+		return tempBuilder.toString();
+	}
+
+	/**
+	 * Provides the data of a blob, possibly multiple times.
+	 *
+	 * @author agent - initial API and implementation
+	 */
+	private interface Source {
+
+		/**
+		 * Opens the data.
+		 *
+		 * @return the stream
+		 * @throws IOException
+		 */
+		InputStream open() throws IOException;
+	}
+}
@@ -0,0 +1,377 @@
+/*******************************************************************************
+ * Copyright (c) 2026 agent and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package de.gebit.integrity;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A hand-written scanner for the XML data in Integrity result files, which extracts the same summary information as the
+ * StAX-based parser, but works directly on the bytes and does not allocate anything per element. It knows just enough
+ * of the XML grammar to do so: comments, CDATA sections, processing instructions and declarations are skipped, quoted
+ * attribute values are honored, the XSLT stylesheet is ignored and the suite nesting depth is tracked.
+ * <p>
+ * The scanner does not validate the document. If it cannot find the summary, {@link #scan(InputStream)} returns null
+ * and callers are expected to fall back to the StAX-based parser.
+ *
+ * @author agent - initial API and implementation
+ */
+public class IntegrityByteScanner {
+
+	/**
+	 * The size of the read buffer.
+	 */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * The maximum number of bytes of a tag that are kept for inspection. Longer tags are only a problem if they are one
+	 * of the tags the summary is extracted from, which are all rather short.
+	 */
+	private static final int MAX_TAG_LENGTH = 16 * 1024;
+
+	/**
+	 * Local element name of the XSLT stylesheet.
+	 */
+	private static final byte[] STYLESHEET = "stylesheet".getBytes(StandardCharsets.US_ASCII);
+
+	/**
+	 * Local element name of suites.
+	 */
+	private static final byte[] SUITE = "suite".getBytes(StandardCharsets.US_ASCII);
+
+	/**
+	 * Local element name of the root element.
+	 */
+	private static final byte[] INTEGRITY = "integrity".getBytes(StandardCharsets.US_ASCII);
+
+	/**
+	 * Local element name of results.
+	 */
+	private static final byte[] RESULT = "result".getBytes(StandardCharsets.US_ASCII);
+
+	/**
+	 * Start of a comment (after the '&lt;').
+	 */
+	private static final byte[] COMMENT_START = "!--".getBytes(StandardCharsets.US_ASCII);
+
+	/**
+	 * Start of a CDATA section (after the '&lt;').
+	 */
+	private static final byte[] CDATA_START = "![CDATA[".getBytes(StandardCharsets.US_ASCII);
+
+	/**
+	 * Scanner state: in character data.
+	 */
+	private static final int STATE_TEXT = 0;
+
+	/**
+	 * Scanner state: inside an element tag (start or end tag), outside of attribute values.
+	 */
+	private static final int STATE_TAG = 1;
+
+	/**
+	 * Scanner state: inside a quoted attribute value.
+	 */
+	private static final int STATE_ATTRIBUTE_VALUE = 2;
+
+	/**
+	 * Scanner state: inside a comment.
+	 */
+	private static final int STATE_COMMENT = 3;
+
+	/**
+	 * Scanner state: inside a CDATA section.
+	 */
+	private static final int STATE_CDATA = 4;
+
+	/**
+	 * Scanner state: inside a processing instruction.
+	 */
+	private static final int STATE_PROCESSING_INSTRUCTION = 5;
+
+	/**
+	 * Scanner state: inside a declaration like DOCTYPE.
+	 */
+	private static final int STATE_DECLARATION = 6;
+
+	/**
+	 * The read buffer.
+	 */
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+
+	/**
+	 * The bytes of the tag currently being scanned, up to {@link #MAX_TAG_LENGTH}.
+	 */
+	private final byte[] tag = new byte[MAX_TAG_LENGTH];
+
+	/**
+	 * The number of bytes of the current tag (may exceed the size of {@link #tag}).
+	 */
+	private int tagLength;
+
+	/**
+	 * The last two bytes of the current tag, which are tracked even if the tag itself is too long to be kept.
+	 */
+	private int tagTail;
+
+	/**
+	 * The quote character of the current attribute value.
+	 */
+	private byte quote;
+
+	/**
+	 * The nesting depth of brackets inside a declaration.
+	 */
+	private int bracketDepth;
+
+	/**
+	 * The last two bytes seen, used to detect the end of comments, CDATA sections and processing instructions.
+	 */
+	private int previousBytes;
+
+	/**
+	 * The depth of the stack of suites at the moment.
+	 */
+	private int suiteStackDepth;
+
+	/**
+	 * Whether we are currently inside the XSLT script part.
+	 */
+	private boolean insideXslt;
+
+	/**
+	 * Whether scanning stops at the root element, since only the test name is needed.
+	 */
+	private boolean testNameOnly;
+
+	/**
+	 * Whether the scanner gave up because a relevant tag could not be evaluated.
+	 */
+	private boolean failed;
+
+	/**
+	 * The summary being filled.
+	 */
+	private final IntegrityResultSummary summary = new IntegrityResultSummary();
+
+	/**
+	 * Scans the given stream until the summary has been found. The stream is read in chunks, so it may have been read a
+	 * bit beyond the summary when this method returns. Instances are meant to be used for one stream only.
+	 *
+	 * @param anInputStream
+	 *            the stream, positioned at the start of the XML data
+	 * @return the summary, or null if it could not be found
+	 * @throws IOException
+	 */
+	public IntegrityResultSummary scan(InputStream anInputStream) throws IOException {
+		int tempState = STATE_TEXT;
+		int tempRead;
+		while ((tempRead = anInputStream.read(buffer)) >= 0) {
+			for (int i = 0; i < tempRead; i++) {
+				byte tempByte = buffer[i];
+				switch (tempState) {
+				case STATE_TEXT:
+					if (tempByte == '<') {
+						tagLength = 0;
+						appendToTag(tempByte);
+						tempState = STATE_TAG;
+					}
+					break;
+				case STATE_TAG:
+					appendToTag(tempByte);
+					if (tempByte == '"' || tempByte == '\'') {
+						quote = tempByte;
+						tempState = STATE_ATTRIBUTE_VALUE;
+					} else if (tempByte == '>') {
+						if (tagLength == 2 || tag[1] == '!') {
+							// "<>" or a declaration without content, like "<!>"
+							tempState = STATE_TEXT;
+						} else if (handleTag()) {
+							return summary;
+						} else if (failed) {
+							return null;
+						} else {
+							tempState = STATE_TEXT;
+						}
+					} else if (tagLength == 2 && tempByte == '?') {
+						previousBytes = 0;
+						tempState = STATE_PROCESSING_INSTRUCTION;
+					} else if (tagLength == COMMENT_START.length + 1 && tagStartsWith(COMMENT_START)) {
+						previousBytes = 0;
+						tempState = STATE_COMMENT;
+					} else if (tagLength == CDATA_START.length + 1 && tagStartsWith(CDATA_START)) {
+						previousBytes = 0;
+						tempState = STATE_CDATA;
+					} else if (tagLength == 3 && tag[1] == '!' && tempByte != '-' && tempByte != '[') {
+						bracketDepth = 0;
+						quote = 0;
+						tempState = STATE_DECLARATION;
+					}
+					break;
+				case STATE_ATTRIBUTE_VALUE:
+					appendToTag(tempByte);
+					if (tempByte == quote) {
+						tempState = STATE_TAG;
+					}
+					break;
+				case STATE_COMMENT:
+					if (tempByte == '>' && previousBytes == (('-' << 8) | '-')) {
+						tempState = STATE_TEXT;
+					}
+					previousBytes = ((previousBytes << 8) | (tempByte & 0xFF)) & 0xFFFF;
+					break;
+				case STATE_CDATA:
+					if (tempByte == '>' && previousBytes == ((']' << 8) | ']')) {
+						tempState = STATE_TEXT;
+					}
+					previousBytes = ((previousBytes << 8) | (tempByte & 0xFF)) & 0xFFFF;
+					break;
+				case STATE_PROCESSING_INSTRUCTION:
+					if (tempByte == '>' && (previousBytes & 0xFF) == '?') {
+						tempState = STATE_TEXT;
+					}
+					previousBytes = ((previousBytes << 8) | (tempByte & 0xFF)) & 0xFFFF;
+					break;
+				case STATE_DECLARATION:
+					if (quote != 0) {
+						if (tempByte == quote) {
+							quote = 0;
+						}
+					} else if (tempByte == '"' || tempByte == '\'') {
+						quote = tempByte;
+					} else if (tempByte == '[') {
+						bracketDepth++;
+					} else if (tempByte == ']') {
+						bracketDepth--;
+					} else if (tempByte == '>' && bracketDepth <= 0) {
+						quote = 0;
+						tempState = STATE_TEXT;
+					}
+					break;
+				default:
+					throw new IllegalStateException("Unknown scanner state " + tempState);
+				}
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Scans the given stream until the start tag of the root element has been found and returns the test name stored
+	 * in it. Like {@link #scan(InputStream)}, this may read a bit beyond the tag.
+	 *
+	 * @param anInputStream
+	 *            the stream, positioned at the start of the XML data
+	 * @return the test name, or null if it could not be found
+	 * @throws IOException
+	 */
+	public String readTestName(InputStream anInputStream) throws IOException {
+		testNameOnly = true;
+		IntegrityResultSummary tempSummary = scan(anInputStream);
+		return tempSummary != null ? tempSummary.getTestName() : null;
+	}
+
+	private void appendToTag(byte aByte) {
+		if (tagLength < tag.length) {
+			tag[tagLength] = aByte;
+		}
+		tagLength++;
+		tagTail = ((tagTail << 8) | (aByte & 0xFF)) & 0xFFFF;
+	}
+
+	private boolean tagStartsWith(byte[] aPrefix) {
+		for (int i = 0; i < aPrefix.length; i++) {
+			if (tag[i + 1] != aPrefix[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Evaluates a complete start or end tag.
+	 *
+	 * @return true if the summary has been found
+	 */
+	private boolean handleTag() {
+		boolean tempIsEndTag = tag[1] == '/';
+		int tempNameStart = tempIsEndTag ? 2 : 1;
+		int tempLimit = Math.min(tagLength, tag.length);
+		int tempNameEnd = tempNameStart;
+		while (tempNameEnd < tempLimit && !IntegrityResultSummary.isWhitespace(tag[tempNameEnd])
+				&& tag[tempNameEnd] != '/' && tag[tempNameEnd] != '>') {
+			if (tag[tempNameEnd] == ':') {
+				// We're only interested in local names
+				tempNameStart = tempNameEnd + 1;
+			}
+			tempNameEnd++;
+		}
+
+		if (tempIsEndTag) {
+			if (insideXslt) {
+				if (nameEquals(tempNameStart, tempNameEnd, STYLESHEET)) {
+					insideXslt = false;
+				}
+			} else if (nameEquals(tempNameStart, tempNameEnd, SUITE)) {
+				suiteStackDepth--;
+			}
+			return false;
+		}
+
+		if (insideXslt) {
+			return false;
+		}
+
+		boolean tempIsEmptyElement = (tagTail >> 8) == '/';
+		if (nameEquals(tempNameStart, tempNameEnd, STYLESHEET)) {
+			insideXslt = !tempIsEmptyElement;
+		} else if (nameEquals(tempNameStart, tempNameEnd, SUITE)) {
+			if (!tempIsEmptyElement) {
+				suiteStackDepth++;
+			}
+		} else if (nameEquals(tempNameStart, tempNameEnd, INTEGRITY)) {
+			if (tagLength > tag.length) {
+				failed = true;
+				return false;
+			}
+			summary.setTestName(IntegrityResultSummary.getAttributeValue(tag, 0, tagLength, "name"));
+			return testNameOnly;
+		} else if (nameEquals(tempNameStart, tempNameEnd, RESULT) && suiteStackDepth == 1) {
+			if (tagLength > tag.length) {
+				failed = true;
+				return false;
+			}
+			if (!IntegrityResultSummary.hasAttribute(tag, 0, tagLength, "type")) {
+				// This is the outermost suite result element (call results carry a result type instead of a summary)
+				try {
+					summary.readCounts(tag, 0, tagLength);
+				} catch (NumberFormatException exc) {
+					failed = true;
+					return false;
+				}
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private boolean nameEquals(int aStart, int anEnd, byte[] aName) {
+		if (anEnd - aStart != aName.length) {
+			return false;
+		}
+		for (int i = 0; i < aName.length; i++) {
+			if (tag[aStart + i] != aName[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,148 @@
+/*******************************************************************************
+ * Copyright (c) 2026 agent and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package de.gebit.integrity;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The cache for rendered trend charts, which are only requested by browsers without JavaScript (see
+ * {@link IntegrityHistory#getCountGraph()}). There is only one cache per JVM, which holds a configurable number of
+ * charts; when it's full, the chart which was not used for the longest time is dropped.
+ * <p>
+ * Charts are identified by a key describing the job and the chart parameters, and carry the version of the trend
+ * data they were rendered from. A chart rendered from older data is never returned.
+ *
+ * @author agent - initial API and implementation
+ */
+public final class IntegrityChartCache {
+
+	/**
+	 * The system property to control the number of charts kept in the cache.
+	 */
+	private static final String CACHE_SIZE_SYSTEM_PROPERTY = "integrity.chartcachesize";
+
+	/**
+	 * The default number of charts kept in the cache.
+	 */
+	private static final int CACHE_SIZE_DEFAULT = 200;
+
+	/**
+	 * The singleton instance, created on first use.
+	 */
+	private static IntegrityChartCache instance;
+
+	/**
+	 * The cached charts, in the order of their last use. Guarded by the cache instance.
+	 */
+	private final LinkedHashMap<String, Chart> charts;
+
+	private IntegrityChartCache(final int aCapacity) {
+		charts = new LinkedHashMap<String, Chart>(16, 0.75f, true) {
+
+			/**
+			 * The serial version.
+			 */
+			private static final long serialVersionUID = -6180433155094817447L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Chart> anEldest) {
+				return size() > aCapacity;
+			}
+		};
+	}
+
+	/**
+	 * Returns the cache of this JVM, creating it if necessary.
+	 *
+	 * @return the cache
+	 */
+	public static synchronized IntegrityChartCache getInstance() {
+		if (instance == null) {
+			String tempSize = System.getProperty(CACHE_SIZE_SYSTEM_PROPERTY, Integer.toString(CACHE_SIZE_DEFAULT));
+			instance = new IntegrityChartCache(Integer.parseInt(tempSize));
+		}
+		return instance;
+	}
+
+	/**
+	 * Looks up a chart.
+	 *
+	 * @param aKey
+	 *            the key of the chart
+	 * @param aVersion
+	 *            the current version of the data the chart is drawn from
+	 * @return the chart, or null if it isn't cached or was rendered from another version of the data
+	 */
+	public synchronized Chart get(String aKey, String aVersion) {
+		Chart tempChart = charts.get(aKey);
+		if (tempChart != null && tempChart.version.equals(aVersion)) {
+			return tempChart;
+		}
+		return null;
+	}
+
+	/**
+	 * Adds a chart to the cache, replacing older versions.
+	 *
+	 * @param aKey
+	 *            the key of the chart
+	 * @param aChart
+	 *            the chart
+	 */
+	public synchronized void put(String aKey, Chart aChart) {
+		charts.put(aKey, aChart);
+	}
+
+	/**
+	 * A rendered chart: the image and the matching image map.
+	 *
+	 * @author agent - initial API and implementation
+	 */
+	public static final class Chart {
+
+		/**
+		 * The version of the data the chart was rendered from.
+		 */
+		private final String version;
+
+		/**
+		 * The PNG image.
+		 */
+		private final byte[] png;
+
+		/**
+		 * The HTML image map.
+		 */
+		private final String map;
+
+		/**
+		 * Creates an instance.
+		 *
+		 * @param aVersion
+		 *            the version of the data the chart was rendered from
+		 * @param aPng
+		 *            the PNG image
+		 * @param aMap
+		 *            the HTML image map
+		 */
+		public Chart(String aVersion, byte[] aPng, String aMap) {
+			version = aVersion;
+			png = aPng;
+			map = aMap;
+		}
+
+		public byte[] getPng() {
+			return png;
+		}
+
+		public String getMap() {
+			return map;
+		}
+	}
+}
@@ -0,0 +1,158 @@
+/*******************************************************************************
+ * Copyright (c) 2026 agent and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package de.gebit.integrity;
+
+import java.io.Serializable;
+
+/**
+ * A lightweight summary of a single test result, as shown in one row of the overview table. These are persisted
+ * together with the {@link IntegrityCompoundTestResult}, so the overview can be rendered without loading the single
+ * results.
+ *
+ * @author agent - initial API and implementation
+ */
+public class IntegrityChildSummary implements Serializable {
+
+	/**
+	 * The serial version.
+	 */
+	private static final long serialVersionUID = -2203528425871016342L;
+
+	/**
+	 * The unique name of the result.
+	 */
+	private String name;
+
+	/**
+	 * The name of the result as used in URLs.
+	 */
+	private String safeName;
+
+	/**
+	 * The name displayed for the result.
+	 */
+	private String displayName;
+
+	/**
+	 * The number of successful tests.
+	 */
+	private int passCount;
+
+	/**
+	 * The number of failures.
+	 */
+	private int failCount;
+
+	/**
+	 * The number of test exceptions.
+	 */
+	private int testExceptionCount;
+
+	/**
+	 * The number of call exceptions.
+	 */
+	private int callExceptionCount;
+
+	/**
+	 * Creates a summary of the given result.
+	 *
+	 * @param aResult
+	 *            the result
+	 */
+	public IntegrityChildSummary(IntegrityTestResult aResult) {
+		name = aResult.getName();
+		safeName = aResult.getSafeName();
+		displayName = aResult.getDisplayName();
+		passCount = aResult.getPassCount();
+		failCount = aResult.getFailCount();
+		testExceptionCount = aResult.getTestExceptionCount();
+		callExceptionCount = aResult.getCallExceptionCount();
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getSafeName() {
+		return safeName;
+	}
+
+	public String getDisplayName() {
+		return displayName;
+	}
+
+	public int getPassCount() {
+		return passCount;
+	}
+
+	public int getFailCount() {
+		return failCount;
+	}
+
+	public int getTestExceptionCount() {
+		return testExceptionCount;
+	}
+
+	public int getCallExceptionCount() {
+		return callExceptionCount;
+	}
+
+	public int getExceptionCount() {
+		return testExceptionCount + callExceptionCount;
+	}
+
+	public String getIconFileName() {
+		return getIconFileName(failCount, getExceptionCount());
+	}
+
+	public String getRowStyle() {
+		return getRowStyle(failCount, getExceptionCount());
+	}
+
+	/**
+	 * Returns the icon representing a result with the given counts.
+	 *
+	 * @param aFailCount
+	 *            the number of failures
+	 * @param anExceptionCount
+	 *            the number of exceptions
+	 * @return the icon URL
+	 */
+	static String getIconFileName(int aFailCount, int anExceptionCount) {
+		if (aFailCount == 0) {
+			if (anExceptionCount > 0) {
+				return "/plugin/de.gebit.integrity.jenkins/integrity_icon_exception.png";
+			} else {
+				return "/plugin/de.gebit.integrity.jenkins/integrity_icon_success.png";
+			}
+		} else {
+			return "/plugin/de.gebit.integrity.jenkins/integrity_icon_failure.png";
+		}
+	}
+
+	/**
+	 * Returns the style of a table row showing a result with the given counts.
+	 *
+	 * @param aFailCount
+	 *            the number of failures
+	 * @param anExceptionCount
+	 *            the number of exceptions
+	 * @return the CSS style
+	 */
+	static String getRowStyle(int aFailCount, int anExceptionCount) {
+		if (aFailCount == 0) {
+			if (anExceptionCount > 0) {
+				return "background-color: #fff4e0;";
+			} else {
+				return "background-color: #e2fce0;";
+			}
+		} else {
+			return "background-color: #ffe0e0;";
+		}
+	}
+}
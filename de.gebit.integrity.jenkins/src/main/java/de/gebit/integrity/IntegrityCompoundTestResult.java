@@ -14,8 +14,16 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
 
+import javax.servlet.RequestDispatcher;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletResponse;
+
+import org.kohsuke.stapler.HttpResponses;
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
 
@@ -57,23 +65,57 @@ public class IntegrityCompoundTestResult extends TabulatedResult {
 	}
 
 	/**
-	 * The inner test results. This field is non-transient in order to ensure that it is serialized and transferred from
+	 * The name of the file in the build directory which contains all children in the format used by older versions.
+	 */
+	private static final String LEGACY_DATA_FILE_NAME = "integrityResultData.xml";
+
+	/**
+	 * The name of the container file in the build directory which contains all children.
+	 */
+	private static final String CONTAINER_FILE_NAME = "integrityResultData.bin";
+
+	/**
+	 * The order of the children: by display name, ignoring case.
+	 */
+	private static final Comparator<IntegrityTestResult> CHILD_ORDER = new Comparator<IntegrityTestResult>() {
+
+		@Override
+		public int compare(IntegrityTestResult o1, IntegrityTestResult o2) {
+			String tempFirstName = o1.getDisplayName() != null ? o1.getDisplayName() : "";
+			String tempSecondName = o2.getDisplayName() != null ? o2.getDisplayName() : "";
+
+			return tempFirstName.compareToIgnoreCase(tempSecondName);
+		}
+	};
+
+	/**
+	 * Used if there is no build to load children from.
+	 */
+	private static final IntegrityResultIndex NO_CHILDREN = new IntegrityResultIndex(
+			Collections.<IntegrityTestResult> emptyList());
+
+	/**
+	 * The inner test results, as long as they have not been persisted. This field is non-transient in order to ensure that it is serialized and transferred from
 	 * build slaves to the master (which works via Java Serialization), but it is omitted by XStream, because for
 	 * XStream serialization (which Jenkins uses to persist build results) we want this field to be considered transient
-	 * - its contents can get quite huge, and we serialize it into a separate file and deserialize it only on demand.
+	 * - its contents can get quite huge, and we store it in a separate binary container file (see
+	 * {@link IntegrityResultContainer}) and read it only on demand. Only the metadata of the children is read when
+	 * loading them; the raw data of each child is read when that child is displayed. Loaded children are kept in the
+	 * {@link IntegrityResultCache}, not in this field. Guarded by this result.
 	 */
 	@XStreamOmitField
 	private List<IntegrityTestResult> tempChildren;
 
 	/**
-	 * Whether we already updated child links.
+	 * Whether we already updated child links of {@link #tempChildren}. Guarded by this result.
 	 */
 	private transient boolean hasUpdatedChildLinks;
 
 	/**
-	 * Whether the currently loaded children are persisted.
+	 * The index over {@link #tempChildren}, built on first use after the children changed. Guarded by this result.
 	 */
-	private transient boolean hasPersistedChildren;
+	private transient IntegrityResultIndex tempChildIndex;
+
 
 	/**
 	 * Total count of failed tests over all children.
@@ -100,6 +142,34 @@ public class IntegrityCompoundTestResult extends TabulatedResult {
 	 */
 	private int callExceptionCount;
 
+	/**
+	 * Summaries of all children, in the order of the children. Persisted together with this result, so the overview
+	 * can be shown without loading the children. Results persisted by older versions don't have these; they are
+	 * computed from the children then. Volatile, since the child counts are published by writing this field.
+	 */
+	private volatile List<IntegrityChildSummary> childSummaries;
+
+	/**
+	 * The safe names of all children, built from {@link #childSummaries} on first use, to check cheaply whether a
+	 * child exists.
+	 */
+	private transient volatile Set<String> childSafeNames;
+
+	/**
+	 * The number of children without failures and exceptions.
+	 */
+	private int passChildCount;
+
+	/**
+	 * The number of children with failures.
+	 */
+	private int failChildCount;
+
+	/**
+	 * The number of children with exceptions.
+	 */
+	private int exceptionChildCount;
+
 	/**
 	 * The action owning this result.
 	 */
@@ -116,65 +186,135 @@ public class IntegrityCompoundTestResult extends TabulatedResult {
 			tempChildren = new ArrayList<IntegrityTestResult>();
 		}
 
-		tempChildren.add(aChild);
+		// Insert at the right position, behind children with an equal name, to keep the list sorted
+		int tempPosition = Collections.binarySearch(tempChildren, aChild, CHILD_ORDER);
+		if (tempPosition < 0) {
+			tempPosition = -tempPosition - 1;
+		}
+		while (tempPosition < tempChildren.size()
+				&& CHILD_ORDER.compare(tempChildren.get(tempPosition), aChild) == 0) {
+			tempPosition++;
+		}
+		tempChildren.add(tempPosition, aChild);
 		aChild.setParent(this);
-		hasPersistedChildren = false;
 
-		sortChildren();
+		tempChildIndex = null;
+	}
+
+	/**
+	 * Adds multiple children (single test results) at once. This is considerably cheaper than adding them one by one,
+	 * since the children are only sorted once.
+	 * 
+	 * @param someChildren
+	 *            the children to add
+	 */
+	public synchronized void addChildren(Collection<IntegrityTestResult> someChildren) {
+		if (tempChildren == null) {
+			tempChildren = new ArrayList<IntegrityTestResult>(someChildren.size());
+		}
+
+		for (IntegrityTestResult tempChild : someChildren) {
+			tempChildren.add(tempChild);
+			tempChild.setParent(this);
+		}
+
+		sortChildren(tempChildren);
+		tempChildIndex = null;
 	}
 
 	private XmlFile getXmlFile() {
-		File tempRootDir = null;
-		Run<?, ?> tempRun = getRun();
-		if (tempRun != null) {
-			tempRootDir = tempRun.getRootDir();
+		File tempRootDir = getRootDir();
+		if (tempRootDir == null) {
+			return null;
+		} else {
+			return new XmlFile(XSTREAM, new File(tempRootDir, LEGACY_DATA_FILE_NAME));
 		}
+	}
 
+	private File getContainerFile() {
+		File tempRootDir = getRootDir();
 		if (tempRootDir == null) {
 			return null;
 		} else {
-			return new XmlFile(XSTREAM, new File(tempRootDir, "integrityResultData.xml"));
+			return new File(tempRootDir, CONTAINER_FILE_NAME);
+		}
+	}
+
+	private File getRootDir() {
+		Run<?, ?> tempRun = getRun();
+		if (tempRun != null) {
+			return tempRun.getRootDir();
 		}
+		return null;
 	}
 
-	private void sortChildren() {
-		Collections.sort(tempChildren, new Comparator<IntegrityTestResult>() {
+	/**
+	 * Releases the raw data of a build in the blob store of its job. This is to be called when the build is deleted.
+	 *
+	 * @param aRun
+	 *            the build
+	 */
+	public static void releaseStoredData(Run<?, ?> aRun) {
+		try {
+			IntegrityResultContainer.release(new File(aRun.getRootDir(), CONTAINER_FILE_NAME),
+					aRun.getParent().getRootDir());
+		} catch (IOException exc) {
+			exc.printStackTrace();
+		}
+	}
 
-			@Override
-			public int compare(IntegrityTestResult o1, IntegrityTestResult o2) {
-				String tempFirstName = o1.getDisplayName() != null ? o1.getDisplayName() : "";
-				String tempSecondName = o2.getDisplayName() != null ? o2.getDisplayName() : "";
+	private File getJobDir() {
+		Run<?, ?> tempRun = getRun();
+		if (tempRun != null) {
+			return tempRun.getParent().getRootDir();
+		}
+		return null;
+	}
 
-				return tempFirstName.compareToIgnoreCase(tempSecondName);
-			}
-		});
+	private static void sortChildren(List<IntegrityTestResult> someChildren) {
+		Collections.sort(someChildren, CHILD_ORDER);
 	}
 
 	@SuppressWarnings("unchecked")
-	private void loadChildren() {
+	private List<IntegrityTestResult> loadChildren() {
+		List<IntegrityTestResult> tempLoadedChildren;
 		try {
-			XmlFile tempFile = getXmlFile();
-			if (tempFile != null) {
-				tempChildren = (List<IntegrityTestResult>) getXmlFile().read();
+			File tempContainerFile = getContainerFile();
+			if (tempContainerFile != null && tempContainerFile.exists()) {
+				// Only the metadata is read here; the raw data of each child is read when it is needed
+				tempLoadedChildren = IntegrityResultContainer.read(tempContainerFile, getJobDir());
 			} else {
-				tempChildren = new ArrayList<IntegrityTestResult>();
+				// Results persisted by older versions keep all data in one file
+				XmlFile tempFile = getXmlFile();
+				if (tempFile != null && tempFile.exists()) {
+					tempLoadedChildren = (List<IntegrityTestResult>) tempFile.read();
+				} else {
+					tempLoadedChildren = new ArrayList<IntegrityTestResult>();
+				}
 			}
 		} catch (IOException exc) {
 			exc.printStackTrace();
-			tempChildren = new ArrayList<IntegrityTestResult>();
+			tempLoadedChildren = new ArrayList<IntegrityTestResult>();
 		}
 
-		hasPersistedChildren = true;
-		sortChildren();
+		for (IntegrityTestResult tempChild : tempLoadedChildren) {
+			tempChild.setParent(this);
+		}
+		sortChildren(tempLoadedChildren);
+		return tempLoadedChildren;
 	}
 
-	private void persistChildren() {
+	private synchronized void persistChildren() {
 		if (tempChildren != null) {
 			try {
-				XmlFile tempFile = getXmlFile();
-				if (tempFile != null) {
-					getXmlFile().write(tempChildren);
-					hasPersistedChildren = true;
+				File tempContainerFile = getContainerFile();
+				if (tempContainerFile != null) {
+					IntegrityResultContainer.write(tempContainerFile, getJobDir(), tempChildren);
+
+					// From now on, the children are handled like ones loaded from disk
+					IntegrityResultCache.getInstance().put(getRootDir(), new IntegrityResultIndex(tempChildren));
+					tempChildren = null;
+					tempChildIndex = null;
 				}
 			} catch (IOException exc) {
 				exc.printStackTrace();
@@ -182,28 +322,86 @@ public class IntegrityCompoundTestResult extends TabulatedResult {
 		}
 	}
 
-	public void updateCounts() {
+	public synchronized void updateCounts() {
 		passCount = 0;
 		failCount = 0;
 		skipCount = 0;
 		testExceptionCount = 0;
 		callExceptionCount = 0;
+		passChildCount = 0;
+		failChildCount = 0;
+		exceptionChildCount = 0;
+
+		List<IntegrityChildSummary> tempSummaries = new ArrayList<IntegrityChildSummary>();
+		for (TestResult tempResult : getChildren()) {
+			passCount += tempResult.getPassCount();
+			failCount += tempResult.getFailCount();
+			skipCount += tempResult.getSkipCount();
+			if (tempResult instanceof IntegrityTestResult) {
+				IntegrityChildSummary tempSummary = new IntegrityChildSummary((IntegrityTestResult) tempResult);
+				tempSummaries.add(tempSummary);
+				testExceptionCount += tempSummary.getTestExceptionCount();
+				callExceptionCount += tempSummary.getCallExceptionCount();
+				if (tempSummary.getFailCount() > 0) {
+					failChildCount++;
+				}
+				if (tempSummary.getExceptionCount() > 0) {
+					exceptionChildCount++;
+				}
+				if (tempSummary.getFailCount() == 0 && tempSummary.getExceptionCount() == 0) {
+					passChildCount++;
+				}
+			}
+		}
+		childSummaries = tempSummaries;
+		childSafeNames = null;
+	}
 
-		if (hasChildren()) {
-			for (TestResult tempResult : getChildren()) {
-				passCount += tempResult.getPassCount();
-				failCount += tempResult.getFailCount();
-				skipCount += tempResult.getSkipCount();
-				if (tempResult instanceof IntegrityTestResult) {
-					testExceptionCount += ((IntegrityTestResult) tempResult).getTestExceptionCount();
-					callExceptionCount += ((IntegrityTestResult) tempResult).getCallExceptionCount();
+	/**
+	 * Returns the summaries of all children, which is all that's needed to show the overview.
+	 * 
+	 * @return the summaries
+	 */
+	public List<IntegrityChildSummary> getChildSummaries() {
+		List<IntegrityChildSummary> tempSummaries = childSummaries;
+		if (tempSummaries == null) {
+			synchronized (this) {
+				if (childSummaries == null) {
+					// Persisted by an older version; this requires the children to be loaded once
+					updateCounts();
 				}
+				tempSummaries = childSummaries;
 			}
 		}
+		return tempSummaries;
+	}
+
+	/**
+	 * Checks whether the summaries of the children are available without loading the children. They aren't for
+	 * results persisted by older versions.
+	 * 
+	 * @return true if the summaries and the child counts are available
+	 */
+	public boolean hasChildSummaries() {
+		return childSummaries != null;
+	}
+
+	/**
+	 * Returns the number of children.
+	 * 
+	 * @return the number of children
+	 */
+	public int getChildCount() {
+		return getChildSummaries().size();
 	}
 
 	private void writeObject(ObjectOutputStream stream) throws IOException {
-		updateCounts();
+		synchronized (this) {
+			if (tempChildren != null || childSummaries == null) {
+				// Children which aren't loaded can't have changed, so their summaries are still valid
+				updateCounts();
+			}
+		}
 
 		stream.defaultWriteObject();
 
@@ -211,9 +409,7 @@ public class IntegrityCompoundTestResult extends TabulatedResult {
 			// Only in case of XStream, persist the children into a separate file.
 			// With Java Serialization we don't, since the children are transported within the serialized compound
 			// result.
-			if (!hasPersistedChildren) {
-				persistChildren();
-			}
+			persistChildren();
 		}
 	}
 
@@ -243,13 +439,61 @@ public class IntegrityCompoundTestResult extends TabulatedResult {
 		return parentAction;
 	}
 
+	/**
+	 * Serves the overview page, unless the client already has the current version of it.
+	 * 
+	 * @param aRequest
+	 *            the request
+	 * @param aResponse
+	 *            the response
+	 * @throws IOException
+	 * @throws ServletException
+	 */
+	public void doIndex(StaplerRequest aRequest, StaplerResponse aResponse) throws IOException, ServletException {
+		if (IntegrityResponseCaching.checkOverview(getRun(), aRequest, aResponse)) {
+			return;
+		}
+
+		RequestDispatcher tempView = aRequest.getView(this, "index.jelly");
+		if (tempView == null) {
+			aResponse.sendError(HttpServletResponse.SC_NOT_FOUND);
+		} else {
+			tempView.forward(aRequest, aResponse);
+		}
+	}
+
 	@Override
 	public Object getDynamic(String aToken, StaplerRequest aRequest, StaplerResponse aResponse) {
-		TestResult tempResult = findCorrespondingResult(aToken);
-		if (tempResult != null) {
-			return tempResult;
+		String tempRestOfPath = aRequest.getRestOfPath();
+		if ((tempRestOfPath == null || tempRestOfPath.isEmpty() || "/".equals(tempRestOfPath)) && hasChild(aToken)
+				&& IntegrityResponseCaching.checkReport(getRun(), aToken,
+						IntegrityResponseCaching.acceptsGzip(aRequest), aRequest, aResponse)) {
+			// The client already has this report; answer without loading any results
+			return HttpResponses.status(HttpServletResponse.SC_NOT_MODIFIED);
 		}
-		return null;
+
+		return findCorrespondingResult(aToken);
+	}
+
+	/**
+	 * Checks whether a child with the given safe name exists, using only the summaries (so no results are loaded).
+	 * Results persisted by older versions have no summaries; computing them would load all children, so the check is
+	 * skipped for these. That is harmless, since a client can only have the entity tag of a report it was sent before.
+	 */
+	private boolean hasChild(String aSafeName) {
+		Set<String> tempSafeNames = childSafeNames;
+		if (tempSafeNames == null) {
+			List<IntegrityChildSummary> tempSummaries = childSummaries;
+			if (tempSummaries == null) {
+				return true;
+			}
+			tempSafeNames = new HashSet<String>();
+			for (IntegrityChildSummary tempSummary : tempSummaries) {
+				tempSafeNames.add(tempSummary.getSafeName());
+			}
+			childSafeNames = tempSafeNames;
+		}
+		return tempSafeNames.contains(aSafeName);
 	}
 
 	@Override
@@ -264,11 +508,10 @@ public class IntegrityCompoundTestResult extends TabulatedResult {
 				// simply expand it as well here :-)
 				String tempChildId = (getId() != null && getId().length() > 0) ? getId() + "/" + anId : anId;
 
-				for (TestResult tempChild : getChildren()) {
-					TestResult tempResult = tempChild.findCorrespondingResult(tempChildId);
-					if (tempResult != null) {
-						return tempResult;
-					}
+				// The ID of a child is our ID plus its safe name, so the child can be looked up directly
+				TestResult tempChild = getChildIndex().get(anId);
+				if (tempChild != null) {
+					return tempChild.findCorrespondingResult(tempChildId);
 				}
 			}
 			return null;
@@ -277,13 +520,57 @@ public class IntegrityCompoundTestResult extends TabulatedResult {
 
 	@Override
 	public boolean hasChildren() {
-		return getChildren().size() > 0;
+		return getChildCount() > 0;
 	}
 
 	@Override
 	public Collection<? extends TestResult> getChildren() {
+		return getChildIndex().getResults();
+	}
+
+	/**
+	 * Returns the children, together with the index to look them up by name.
+	 */
+	private IntegrityResultIndex getChildIndex() {
+		IntegrityResultIndex tempUnpersistedChildren = getUnpersistedChildIndex();
+		if (tempUnpersistedChildren != null) {
+			return tempUnpersistedChildren;
+		}
+
+		File tempRootDir = getRootDir();
+		if (tempRootDir == null) {
+			return NO_CHILDREN;
+		}
+
+		// Children loaded from disk are not referenced from here, but only from the cache, which limits the amount of
+		// memory used by them. Concurrent requests for the same build share a single load.
+		IntegrityResultIndex tempLoadedChildren = IntegrityResultCache.getInstance().get(tempRootDir,
+				new Callable<IntegrityResultIndex>() {
+
+					@Override
+					public IntegrityResultIndex call() {
+						return new IntegrityResultIndex(loadChildren());
+					}
+				});
+		List<IntegrityTestResult> tempResults = tempLoadedChildren.getResults();
+		if (!tempResults.isEmpty() && tempResults.get(0).getParent() != this) {
+			// The build was reloaded since the children were cached
+			synchronized (tempResults) {
+				for (IntegrityTestResult tempChild : tempResults) {
+					tempChild.setParent(this);
+				}
+			}
+		}
+
+		return tempLoadedChildren;
+	}
+
+	/**
+	 * Returns the children which have not been persisted yet, if any.
+	 */
+	private synchronized IntegrityResultIndex getUnpersistedChildIndex() {
 		if (tempChildren == null) {
-			loadChildren();
+			return null;
 		}
 
 		if (!hasUpdatedChildLinks) {
@@ -292,8 +579,11 @@ public class IntegrityCompoundTestResult extends TabulatedResult {
 			}
 			hasUpdatedChildLinks = true;
 		}
+		if (tempChildIndex == null) {
+			tempChildIndex = new IntegrityResultIndex(tempChildren);
+		}
 
-		return tempChildren;
+		return tempChildIndex;
 	}
 
 	@Override
@@ -302,14 +592,8 @@ public class IntegrityCompoundTestResult extends TabulatedResult {
 	}
 
 	public int getFailChildCount() {
-		int tempCount = 0;
-		for (TestResult tempChild : getChildren()) {
-			if (tempChild.getFailCount() > 0) {
-				tempCount++;
-			}
-		}
-
-		return tempCount;
+		getChildSummaries();
+		return failChildCount;
 	}
 
 	@Override
@@ -318,14 +602,8 @@ public class IntegrityCompoundTestResult extends TabulatedResult {
 	}
 
 	public int getPassChildCount() {
-		int tempCount = 0;
-		for (TestResult tempChild : getChildren()) {
-			if (tempChild.getFailCount() == 0 && ((IntegrityTestResult) tempChild).getExceptionCount() == 0) {
-				tempCount++;
-			}
-		}
-
-		return tempCount;
+		getChildSummaries();
+		return passChildCount;
 	}
 
 	@Override
@@ -334,14 +612,8 @@ public class IntegrityCompoundTestResult extends TabulatedResult {
 	}
 
 	public int getExceptionChildCount() {
-		int tempCount = 0;
-		for (TestResult tempChild : getChildren()) {
-			if (((IntegrityTestResult) tempChild).getExceptionCount() > 0) {
-				tempCount++;
-			}
-		}
-
-		return tempCount;
+		getChildSummaries();
+		return exceptionChildCount;
 	}
 
 	public int getTestExceptionCount() {
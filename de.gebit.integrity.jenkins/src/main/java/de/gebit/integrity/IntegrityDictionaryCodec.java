@@ -0,0 +1,155 @@
+/*******************************************************************************
+ * Copyright (c) 2026 agent and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package de.gebit.integrity;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.Adler32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Compresses raw data with a preset dictionary built from sample Integrity reports: the element and attribute
+ * vocabulary of the report writer with the attribute values left out, except for the result types and zero counts.
+ * These are the lines of the variables, setup, tearDown, suite, test, tableTest and call elements, of their parameters
+ * and results, and of the exception messages and traces with the frames through which every fixture is invoked. Since
+ * the compressor knows these strings in advance, even small reports compress well.
+ * <p>
+ * The data is a zlib stream, which carries the Adler-32 checksum of the dictionary it was compressed with. The
+ * dictionaries are shipped with the plugin as resources named "rawDataDictionary&lt;version&gt;.bin"; new data is
+ * always compressed with the newest one, while data compressed with older ones is still decompressed, as long as these
+ * are kept. A dictionary must never be changed once it has been released.
+ *
+ * @author agent - initial API and implementation
+ */
+public final class IntegrityDictionaryCodec {
+
+	/**
+	 * The version of the newest dictionary. All dictionaries from version 1 up to this one are shipped.
+	 */
+	private static final int DICTIONARY_VERSION = 1;
+
+	/**
+	 * The size of the stream buffers.
+	 */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * The dictionaries by their Adler-32 checksum, loaded on first use.
+	 */
+	private static Map<Integer, byte[]> dictionaries;
+
+	/**
+	 * The newest dictionary, loaded on first use.
+	 */
+	private static byte[] currentDictionary;
+
+	private IntegrityDictionaryCodec() {
+		// static methods only
+	}
+
+	/**
+	 * Creates a stream which compresses everything written to it with the newest dictionary.
+	 *
+	 * @param aTarget
+	 *            the stream to write the compressed data to
+	 * @return the compressing stream
+	 * @throws IOException
+	 */
+	public static OutputStream createCompressor(OutputStream aTarget) throws IOException {
+		Deflater tempDeflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+		tempDeflater.setDictionary(getCurrentDictionary());
+		return new DeflaterOutputStream(aTarget, tempDeflater, BUFFER_SIZE) {
+
+			@Override
+			public void close() throws IOException {
+				try {
+					super.close();
+				} finally {
+					// Streams with a custom deflater don't release it themselves
+					def.end();
+				}
+			}
+		};
+	}
+
+	/**
+	 * Creates a stream which decompresses data compressed by {@link #createCompressor(OutputStream)}, using whichever
+	 * dictionary the data asks for.
+	 *
+	 * @param aSource
+	 *            the stream to read the compressed data from
+	 * @return the decompressing stream
+	 */
+	public static InputStream createDecompressor(InputStream aSource) {
+		return new InflaterInputStream(aSource, new Inflater(), BUFFER_SIZE) {
+
+			@Override
+			public int read(byte[] aBuffer, int anOffset, int aLength) throws IOException {
+				int tempRead = super.read(aBuffer, anOffset, aLength);
+				if (tempRead < 0 && inf.needsDictionary()) {
+					byte[] tempDictionary = getDictionaries().get(inf.getAdler());
+					if (tempDictionary == null) {
+						throw new ZipException("Raw data was compressed with an unknown dictionary");
+					}
+					inf.setDictionary(tempDictionary);
+					tempRead = super.read(aBuffer, anOffset, aLength);
+				}
+				return tempRead;
+			}
+
+			@Override
+			public void close() throws IOException {
+				try {
+					super.close();
+				} finally {
+					inf.end();
+				}
+			}
+		};
+	}
+
+	private static synchronized byte[] getCurrentDictionary() throws IOException {
+		if (currentDictionary == null) {
+			currentDictionary = loadDictionary(DICTIONARY_VERSION);
+		}
+		return currentDictionary;
+	}
+
+	private static synchronized Map<Integer, byte[]> getDictionaries() throws IOException {
+		if (dictionaries == null) {
+			Map<Integer, byte[]> tempDictionaries = new HashMap<Integer, byte[]>();
+			for (int i = 1; i <= DICTIONARY_VERSION; i++) {
+				byte[] tempDictionary = loadDictionary(i);
+				Adler32 tempChecksum = new Adler32();
+				tempChecksum.update(tempDictionary);
+				tempDictionaries.put((int) tempChecksum.getValue(), tempDictionary);
+			}
+			dictionaries = tempDictionaries;
+		}
+		return dictionaries;
+	}
+
+	private static byte[] loadDictionary(int aVersion) throws IOException {
+		String tempName = "rawDataDictionary" + aVersion + ".bin";
+		try (InputStream tempStream = IntegrityDictionaryCodec.class.getResourceAsStream(tempName)) {
+			if (tempStream == null) {
+				throw new IOException("Dictionary " + tempName + " is missing");
+			}
+			return IOUtils.toByteArray(tempStream);
+		}
+	}
+}
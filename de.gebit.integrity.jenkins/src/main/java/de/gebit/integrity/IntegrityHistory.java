@@ -9,10 +9,17 @@ package de.gebit.integrity;
 
 import java.awt.Color;
 import java.awt.Paint;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import org.jfree.chart.ChartFactory;
+import org.jfree.chart.ChartRenderingInfo;
+import org.jfree.chart.ChartUtilities;
 import org.jfree.chart.JFreeChart;
 import org.jfree.chart.axis.CategoryAxis;
 import org.jfree.chart.axis.CategoryLabelPositions;
@@ -23,8 +30,10 @@ import org.jfree.chart.renderer.category.StackedAreaRenderer;
 import org.jfree.data.category.CategoryDataset;
 import org.jfree.ui.RectangleInsets;
 import org.kohsuke.stapler.Stapler;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
 
-import hudson.model.AbstractBuild;
+import hudson.model.Job;
 import hudson.model.Run;
 import hudson.tasks.test.TestResult;
 import hudson.util.ChartUtil;
@@ -47,18 +56,72 @@ import jenkins.security.stapler.StaplerAccessibleType;
 public class IntegrityHistory {
 
 	/**
-	 * The test result used as base for the graph.
+	 * The default width of graphs.
 	 */
-	private final RunList<?> runs;
+	private static final int DEFAULT_WIDTH = 500;
+
+	/**
+	 * The default height of graphs.
+	 */
+	private static final int DEFAULT_HEIGHT = 200;
+
+	/**
+	 * The maximum width or height of graphs, which limits the size of cached images.
+	 */
+	private static final int MAX_SIZE = 2000;
+
+	/**
+	 * The system property to limit the trend graph to the given number of most recent builds (0 = no limit). Can be
+	 * overridden by the request parameter "builds".
+	 */
+	private static final String TREND_BUILDS_SYSTEM_PROPERTY = "integrity.trendbuilds";
+
+	/**
+	 * The system property to limit the trend graph to the builds of the given number of most recent days (0 = no
+	 * limit). Can be overridden by the request parameter "days".
+	 */
+	private static final String TREND_DAYS_SYSTEM_PROPERTY = "integrity.trenddays";
+
+	/**
+	 * The system property to control the maximum number of points in the trend graph. If there are more builds, the
+	 * older ones are aggregated into buckets. Can be overridden by the request parameter "points".
+	 */
+	private static final String TREND_POINTS_SYSTEM_PROPERTY = "integrity.trendpoints";
+
+	/**
+	 * The system property to control how the builds in a bucket are aggregated: "avg", "min" or "max". Can be
+	 * overridden by the request parameter "aggregation".
+	 */
+	private static final String TREND_AGGREGATION_SYSTEM_PROPERTY = "integrity.trendaggregation";
+
+	/**
+	 * The default maximum number of points in the trend graph.
+	 */
+	private static final int TREND_POINTS_DEFAULT = 100;
+
+	/**
+	 * The minimum number of points in the trend graph.
+	 */
+	private static final int TREND_POINTS_MIN = 2;
+
+	/**
+	 * One hour, in milliseconds. Time-based windows move in steps of this size, so charts can be cached.
+	 */
+	private static final long HOUR = 60L * 60L * 1000L;
+
+	/**
+	 * The job whose history is shown.
+	 */
+	private final Job<?, ?> job;
 
 	/**
 	 * Creates a new instance.
 	 * 
-	 * @param aRunList
-	 *            the run list
+	 * @param aJob
+	 *            the job
 	 */
-	public IntegrityHistory(RunList<?> aRunList) {
-		this.runs = aRunList;
+	public IntegrityHistory(Job<?, ?> aJob) {
+		this.job = aJob;
 	}
 
 	/**
@@ -67,7 +130,7 @@ public class IntegrityHistory {
 	 * @return true if available, false otherwise
 	 */
 	public boolean historyAvailable() {
-		return runs.size() > 1;
+		return IntegrityTrendIndex.getEntries(job).size() > 1;
 	}
 
 	/**
@@ -80,9 +143,10 @@ public class IntegrityHistory {
 	 * @return the test results
 	 */
 	public List<TestResult> getList(int aStart, int anEnd) {
+		RunList<?> tempRuns = job.getBuilds();
 		List<TestResult> tempList = new ArrayList<TestResult>();
-		int tempEnd = Math.min(anEnd, runs.size());
-		for (Run<?, ?> tempBuild : runs.subList(aStart, tempEnd)) {
+		int tempEnd = Math.min(anEnd, tempRuns.size());
+		for (Run<?, ?> tempBuild : tempRuns.subList(aStart, tempEnd)) {
 			if (tempBuild.isBuilding()) {
 				continue;
 			}
@@ -95,40 +159,207 @@ public class IntegrityHistory {
 	}
 
 	public List<TestResult> getList() {
-		return getList(0, runs.size());
+		return getList(0, Integer.MAX_VALUE);
 	}
 
 	/**
-	 * Returns a graph of test results (# successful, failed etc.) over time.
+	 * Fetches the trend index entries in a certain interval, which doesn't require any builds to be loaded.
+	 * 
+	 * @param aStart
+	 *            the index of the first entry (newest first)
+	 * @param anEnd
+	 *            the index after the last entry
+	 * @return the entries
+	 */
+	public List<IntegrityTrendIndex.Entry> getEntries(int aStart, int anEnd) {
+		List<IntegrityTrendIndex.Entry> tempEntries = IntegrityTrendIndex.getEntries(job);
+		int tempEnd = Math.min(anEnd, tempEntries.size());
+		int tempStart = Math.min(Math.max(aStart, 0), tempEnd);
+		return tempEntries.subList(tempStart, tempEnd);
+	}
+
+	/**
+	 * Returns the points of the trend graph for the given window. Builds outside of the window are omitted; if there
+	 * are still more builds than points, the most recent builds are shown individually and the older ones are
+	 * aggregated into buckets of consecutive builds, so the cost of the graph doesn't depend on the length of the
+	 * history.
+	 * 
+	 * @param aWindow
+	 *            the window
+	 * @return the points, newest first
+	 */
+	public List<IntegrityTrendPoint> getPoints(Window aWindow) {
+		List<IntegrityTrendIndex.Entry> tempEntries = getEntries(aWindow.start, aWindow.end);
+		if (aWindow.buildLimit > 0 && tempEntries.size() > aWindow.buildLimit) {
+			tempEntries = tempEntries.subList(0, aWindow.buildLimit);
+		}
+		if (aWindow.cutoff > 0) {
+			int tempCount = 0;
+			while (tempCount < tempEntries.size() && tempEntries.get(tempCount).getTimestamp() >= aWindow.cutoff) {
+				tempCount++;
+			}
+			tempEntries = tempEntries.subList(0, tempCount);
+		}
+
+		List<IntegrityTrendPoint> tempPoints = new ArrayList<IntegrityTrendPoint>();
+		int tempSingleCount = (tempEntries.size() <= aWindow.maxPoints) ? tempEntries.size() : aWindow.maxPoints / 2;
+		for (IntegrityTrendIndex.Entry tempEntry : tempEntries.subList(0, tempSingleCount)) {
+			tempPoints.add(new IntegrityTrendPoint(Collections.singletonList(tempEntry)));
+		}
+
+		List<IntegrityTrendIndex.Entry> tempOlderEntries = tempEntries.subList(tempSingleCount, tempEntries.size());
+		if (!tempOlderEntries.isEmpty()) {
+			int tempBucketCount = aWindow.maxPoints - tempSingleCount;
+			int tempBucketSize = (tempOlderEntries.size() + tempBucketCount - 1) / tempBucketCount;
+			for (int i = 0; i < tempOlderEntries.size(); i += tempBucketSize) {
+				tempPoints.add(new IntegrityTrendPoint(
+						tempOlderEntries.subList(i, Math.min(i + tempBucketSize, tempOlderEntries.size()))));
+			}
+		}
+
+		return tempPoints;
+	}
+
+	/**
+	 * Returns a graph of test results (# successful, failed etc.) over time. The graph is drawn from the trend index,
+	 * limited to the window given by the current request. The trend chart of the job page is drawn in the browser
+	 * instead; this server-side graph is its fallback for browsers without JavaScript.
 	 * 
 	 * @return
 	 */
 	public Graph getCountGraph() {
-		return new GraphImpl("") {
+		final Window tempWindow = new Window(Stapler.getCurrentRequest());
+		return new GraphImpl("", tempWindow) {
 
 			@Override
 			protected DataSetBuilder<String, ChartLabel> createDataSet() {
 				DataSetBuilder<String, ChartLabel> tempData = new DataSetBuilder<String, ChartLabel>();
 
-				List<TestResult> tempResultList;
+				for (IntegrityTrendPoint tempPoint : getPoints(tempWindow)) {
+					ChartLabel tempLabel = new ChartLabel(job, tempPoint);
+					tempData.add(tempPoint.getPassCounts().get(tempWindow.aggregation), "2Passed", tempLabel);
+					tempData.add(tempPoint.getFailCounts().get(tempWindow.aggregation), "1Failed", tempLabel);
+					tempData.add(tempPoint.getSkipCounts().get(tempWindow.aggregation), "0Skipped", tempLabel);
+				}
+
+				return tempData;
+			}
+		};
+	}
+
+	/**
+	 * The part of the history shown in a trend graph, and how it is condensed.
+	 */
+	public static final class Window {
+
+		/**
+		 * The index of the first trend index entry (newest first).
+		 */
+		private final int start;
+
+		/**
+		 * The index after the last trend index entry.
+		 */
+		private final int end;
+
+		/**
+		 * The maximum number of builds, or 0.
+		 */
+		private final int buildLimit;
+
+		/**
+		 * The time before which builds are omitted, or 0.
+		 */
+		private final long cutoff;
+
+		/**
+		 * The maximum number of points.
+		 */
+		private final int maxPoints;
+
+		/**
+		 * How builds are aggregated in buckets.
+		 */
+		private final IntegrityTrendPoint.Aggregation aggregation;
+
+		/**
+		 * Creates the window given by the parameters of a request, or by the system-wide defaults.
+		 * 
+		 * @param aRequest
+		 *            the request (may be null)
+		 */
+		public Window(StaplerRequest aRequest) {
+			int tempStart = 0;
+			int tempEnd = Integer.MAX_VALUE;
+			if (aRequest != null) {
 				try {
-					tempResultList = getList(Integer.parseInt(Stapler.getCurrentRequest().getParameter("start")),
-							Integer.parseInt(Stapler.getCurrentRequest().getParameter("end")));
+					tempStart = Integer.parseInt(aRequest.getParameter("start"));
+					tempEnd = Integer.parseInt(aRequest.getParameter("end"));
 				} catch (NumberFormatException exc) {
-					tempResultList = getList();
+					tempStart = 0;
+					tempEnd = Integer.MAX_VALUE;
 				}
+			}
+			start = tempStart;
+			end = tempEnd;
+
+			buildLimit = Math.max(0, getSetting(aRequest, "builds", TREND_BUILDS_SYSTEM_PROPERTY, 0));
+			int tempDays = Math.max(0, getSetting(aRequest, "days", TREND_DAYS_SYSTEM_PROPERTY, 0));
+			if (tempDays > 0) {
+				long tempCutoff = System.currentTimeMillis() - tempDays * 24L * HOUR;
+				cutoff = tempCutoff - tempCutoff % HOUR;
+			} else {
+				cutoff = 0;
+			}
+			maxPoints = Math.max(TREND_POINTS_MIN,
+					getSetting(aRequest, "points", TREND_POINTS_SYSTEM_PROPERTY, TREND_POINTS_DEFAULT));
 
-				for (TestResult tempResult : tempResultList) {
-					tempData.add(tempResult.getPassCount(), "2Passed", new ChartLabel(tempResult));
-					tempData.add(tempResult.getFailCount(), "1Failed", new ChartLabel(tempResult));
-					tempData.add(tempResult.getSkipCount(), "0Skipped", new ChartLabel(tempResult));
-				}
+			String tempAggregation = (aRequest != null) ? aRequest.getParameter("aggregation") : null;
+			if (tempAggregation == null) {
+				tempAggregation = System.getProperty(TREND_AGGREGATION_SYSTEM_PROPERTY);
+			}
+			aggregation = IntegrityTrendPoint.Aggregation.parse(tempAggregation, IntegrityTrendPoint.Aggregation.AVG);
+		}
 
-				return tempData;
+		private static int getSetting(StaplerRequest aRequest, String aParameter, String aSystemProperty,
+				int aDefault) {
+			String tempValue = (aRequest != null) ? aRequest.getParameter(aParameter) : null;
+			if (tempValue == null) {
+				tempValue = System.getProperty(aSystemProperty);
 			}
-		};
+			if (tempValue == null) {
+				return aDefault;
+			}
+			try {
+				return Integer.parseInt(tempValue.trim());
+			} catch (NumberFormatException exc) {
+				return aDefault;
+			}
+		}
+
+		/**
+		 * Returns the time before which builds are omitted.
+		 * 
+		 * @return the time in milliseconds, or 0 if the window isn't time-based
+		 */
+		public long getCutoff() {
+			return cutoff;
+		}
+
+		/**
+		 * Returns a string which identifies the window, for caching purposes.
+		 * 
+		 * @return the key
+		 */
+		public String getKey() {
+			return start + "|" + end + "|" + buildLimit + "|" + cutoff + "|" + maxPoints + "|" + aggregation;
+		}
 	}
 
+	/**
+	 * A graph drawn from the trend index. The rendered image and image map are cached until the index changes, and
+	 * requests are answered with "304 Not Modified" if the client has the current version.
+	 */
 	private abstract class GraphImpl extends Graph {
 
 		/**
@@ -136,13 +367,79 @@ public class IntegrityHistory {
 		 */
 		private final String yLabel;
 
-		protected GraphImpl(String anYLabel) {
-			super(-1, 500, 200);
+		/**
+		 * The part of the history shown.
+		 */
+		private final Window window;
+
+		/**
+		 * The point in time when the data of the graph last changed.
+		 */
+		private final long timestamp;
+
+		protected GraphImpl(String anYLabel, Window aWindow) {
+			// A time-based window moves even if no builds are added
+			this(anYLabel, aWindow, Math.max(IntegrityTrendIndex.getLastModified(job), aWindow.getCutoff()));
+		}
+
+		private GraphImpl(String anYLabel, Window aWindow, long aTimestamp) {
+			super(aTimestamp, DEFAULT_WIDTH, DEFAULT_HEIGHT);
 			this.yLabel = anYLabel;
+			this.window = aWindow;
+			this.timestamp = aTimestamp;
 		}
 
 		protected abstract DataSetBuilder<String, ChartLabel> createDataSet();
 
+		@Override
+		public void doPng(StaplerRequest aRequest, StaplerResponse aResponse) throws IOException {
+			if (aRequest.checkIfModified(timestamp, aResponse)) {
+				return;
+			}
+
+			IntegrityChartCache.Chart tempChart = getChart(aRequest);
+			aResponse.setContentType("image/png");
+			try (OutputStream tempOut = aResponse.getOutputStream()) {
+				tempOut.write(tempChart.getPng());
+			}
+		}
+
+		@Override
+		public void doMap(StaplerRequest aRequest, StaplerResponse aResponse) throws IOException {
+			if (aRequest.checkIfModified(timestamp, aResponse)) {
+				return;
+			}
+
+			IntegrityChartCache.Chart tempChart = getChart(aRequest);
+			aResponse.setContentType("text/plain;charset=UTF-8");
+			aResponse.getWriter().println(tempChart.getMap());
+		}
+
+		/**
+		 * Returns the rendered chart for the parameters of the given request, rendering it if it isn't cached. Both
+		 * the image and the image map are rendered at once, since the browser requests both.
+		 */
+		private IntegrityChartCache.Chart getChart(StaplerRequest aRequest) throws IOException {
+			int tempWidth = parseSize(aRequest.getParameter("width"), DEFAULT_WIDTH);
+			int tempHeight = parseSize(aRequest.getParameter("height"), DEFAULT_HEIGHT);
+			String tempKey = job.getFullName() + "|" + getClass().getName() + "|" + window.getKey() + "|" + tempWidth
+					+ "x" + tempHeight;
+			String tempVersion = IntegrityTrendIndex.getVersion(job);
+
+			IntegrityChartCache.Chart tempChart = IntegrityChartCache.getInstance().get(tempKey, tempVersion);
+			if (tempChart == null) {
+				ChartRenderingInfo tempInfo = new ChartRenderingInfo();
+				BufferedImage tempImage = createGraph().createBufferedImage(tempWidth, tempHeight, tempInfo);
+				ByteArrayOutputStream tempPng = new ByteArrayOutputStream();
+				ChartUtilities.writeBufferedImageAsPNG(tempPng, tempImage);
+
+				tempChart = new IntegrityChartCache.Chart(tempVersion, tempPng.toByteArray(),
+						ChartUtilities.getImageMap("map", tempInfo));
+				IntegrityChartCache.getInstance().put(tempKey, tempChart);
+			}
+			return tempChart;
+		}
+
 		@Override
 		protected JFreeChart createGraph() {
 			final CategoryDataset dataset = createDataSet().build();
@@ -186,6 +483,31 @@ public class IntegrityHistory {
 		}
 	}
 
+	/**
+	 * Returns the absolute URL of the results of a build.
+	 * 
+	 * @param aJob
+	 *            the job
+	 * @param aBuildNumber
+	 *            the number of the build
+	 * @return the URL
+	 */
+	public static String getResultUrl(Job<?, ?> aJob, int aBuildNumber) {
+		return Jenkins.getInstance().getRootUrl() + aJob.getUrl() + aBuildNumber + "/"
+				+ IntegrityTestResultAction.ACTION_URL + "/";
+	}
+
+	private static int parseSize(String aValue, int aDefault) {
+		if (aValue == null) {
+			return aDefault;
+		}
+		try {
+			return Math.max(1, Math.min(MAX_SIZE, Integer.parseInt(aValue)));
+		} catch (NumberFormatException exc) {
+			return aDefault;
+		}
+	}
+
 	public static class MyStackedAreaRenderer extends StackedAreaRenderer2 {
 
 		/**
@@ -211,12 +533,19 @@ public class IntegrityHistory {
 		@Override
 		public String generateToolTip(CategoryDataset aDataset, int aRow, int aColumn) {
 			ChartLabel tempLabel = (ChartLabel) aDataset.getColumnKey(aColumn);
-			TestResult tempResult = tempLabel.result;
-			return tempResult.getRun().getDisplayName() + ": " + tempResult.getPassCount() + " successful tests, "
-					+ tempResult.getFailCount() + " failures, " + tempResult.getSkipCount()
+			IntegrityTrendPoint tempPoint = tempLabel.point;
+			return tempPoint.getLabel() + ": " + format(tempPoint.getPassCounts()) + " successful tests, "
+					+ format(tempPoint.getFailCounts()) + " failures, " + format(tempPoint.getSkipCounts())
 					+ " exceptions during tests";
 		}
 
+		private static String format(IntegrityTrendPoint.Range aRange) {
+			if (aRange.getMin() == aRange.getMax()) {
+				return Integer.toString(aRange.getMin());
+			}
+			return String.format("%.1f (%d-%d)", aRange.getAverage(), aRange.getMin(), aRange.getMax());
+		}
+
 		@Override
 		public boolean equals(Object obj) {
 			return super.equals(obj);
@@ -231,17 +560,23 @@ public class IntegrityHistory {
 	public static class ChartLabel implements Comparable<ChartLabel> {
 
 		/**
-		 * The test result.
+		 * The job the build belongs to.
+		 */
+		private Job<?, ?> job;
+
+		/**
+		 * The point of the graph.
 		 */
-		private TestResult result;
+		private IntegrityTrendPoint point;
 
 		/**
 		 * The URL where this label is to be linked.
 		 */
 		private String url;
 
-		public ChartLabel(TestResult aResult) {
-			this.result = aResult;
+		public ChartLabel(Job<?, ?> aJob, IntegrityTrendPoint aPoint) {
+			this.job = aJob;
+			this.point = aPoint;
 		}
 
 		public String getUrl() {
@@ -252,15 +587,13 @@ public class IntegrityHistory {
 		}
 
 		private void generateUrl() {
-			Run<?, ?> tempBuild = result.getRun();
-			String tempBuildLink = tempBuild.getUrl();
-			String tempActionUrl = IntegrityTestResultAction.ACTION_URL;
-			this.url = Jenkins.getInstance().getRootUrl() + tempBuildLink + tempActionUrl + result.getUrl();
+			// Buckets link to their newest build
+			this.url = getResultUrl(job, point.getLastBuildNumber());
 		}
 
 		@Override
 		public int compareTo(ChartLabel anOtherLabel) {
-			return this.result.getRun().number - anOtherLabel.result.getRun().number;
+			return this.point.getLastBuildNumber() - anOtherLabel.point.getLastBuildNumber();
 		}
 
 		@Override
@@ -269,7 +602,7 @@ public class IntegrityHistory {
 				return false;
 			}
 			ChartLabel tempOtherObject = (ChartLabel) anOtherObject;
-			return this.result.equals(tempOtherObject.result) && this.result == tempOtherObject.result;
+			return this.point == tempOtherObject.point;
 		}
 
 		public Color getColor() {
@@ -278,20 +611,12 @@ public class IntegrityHistory {
 
 		@Override
 		public int hashCode() {
-			return result.hashCode();
+			return point.getLastBuildNumber();
 		}
 
 		@Override
 		public String toString() {
-			Run<?, ?> tempRun = result.getRun();
-			String tempLabel = tempRun.getDisplayName();
-			if (tempRun instanceof AbstractBuild<?, ?>) {
-				String tempBuiltOn = ((AbstractBuild<?, ?>) tempRun).getBuiltOnStr();
-				if (tempBuiltOn != null) {
-					tempLabel += ' ' + tempBuiltOn;
-				}
-			}
-			return tempLabel;
+			return point.getLabel();
 		}
 
 	}
@@ -0,0 +1,489 @@
+/*******************************************************************************
+ * Copyright (c) 2026 agent and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package de.gebit.integrity;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.ZipException;
+
+/**
+ * A pure-Java implementation of LZ4 block compression, which trades compression ratio for speed: compression and
+ * especially decompression are several times faster than with GZIP.
+ * <p>
+ * The data is split into blocks of up to {@value #BLOCK_SIZE} bytes, each of which is compressed in the standard LZ4
+ * block format. Every block is preceded by its uncompressed and its stored length; if both are equal, the block is
+ * stored uncompressed. A block with an uncompressed length of zero ends the data.
+ *
+ * @author agent - initial API and implementation
+ */
+public final class IntegrityLz4Codec {
+
+	/**
+	 * The maximum number of uncompressed bytes per block.
+	 */
+	static final int BLOCK_SIZE = 256 * 1024;
+
+	/**
+	 * The minimum length of a match.
+	 */
+	private static final int MIN_MATCH = 4;
+
+	/**
+	 * The number of bytes at the end of a block which are always literals.
+	 */
+	private static final int LAST_LITERALS = 5;
+
+	/**
+	 * No match may start within this number of bytes before the end of a block.
+	 */
+	private static final int MATCH_FIND_LIMIT = 12;
+
+	/**
+	 * The largest distance of a match.
+	 */
+	private static final int MAX_DISTANCE = 65535;
+
+	/**
+	 * The number of bits of the hash of four bytes.
+	 */
+	private static final int HASH_BITS = 14;
+
+	/**
+	 * The maximum value of a length nibble in a token; larger lengths continue in following bytes.
+	 */
+	private static final int RUN_MASK = 15;
+
+	/**
+	 * Controls how fast the compressor skips over data without matches.
+	 */
+	private static final int SKIP_TRIGGER = 6;
+
+	private IntegrityLz4Codec() {
+		// static methods only
+	}
+
+	/**
+	 * Creates a stream which compresses everything written to it.
+	 *
+	 * @param aTarget
+	 *            the stream to write the compressed data to
+	 * @return the compressing stream
+	 */
+	public static OutputStream createCompressor(OutputStream aTarget) {
+		return new CompressingStream(aTarget);
+	}
+
+	/**
+	 * Creates a stream which decompresses data compressed by {@link #createCompressor(OutputStream)}.
+	 *
+	 * @param aSource
+	 *            the stream to read the compressed data from
+	 * @return the decompressing stream
+	 */
+	public static InputStream createDecompressor(InputStream aSource) {
+		return new DecompressingStream(aSource);
+	}
+
+	/**
+	 * Returns the maximum size of a compressed block.
+	 *
+	 * @param aLength
+	 *            the uncompressed length
+	 * @return the maximum compressed length
+	 */
+	static int getMaxCompressedLength(int aLength) {
+		return aLength + aLength / 255 + 16;
+	}
+
+	/**
+	 * Compresses a block.
+	 *
+	 * @param aSource
+	 *            the uncompressed data
+	 * @param aLength
+	 *            the number of bytes to compress
+	 * @param aTarget
+	 *            the buffer receiving the compressed data, of at least {@link #getMaxCompressedLength(int)} bytes
+	 * @param aHashTable
+	 *            a hash table of 2^{@value #HASH_BITS} entries, which is overwritten
+	 * @return the compressed length
+	 */
+	static int compress(byte[] aSource, int aLength, byte[] aTarget, int[] aHashTable) {
+		Arrays.fill(aHashTable, -1);
+		int tempAnchor = 0;
+		int tempTargetPosition = 0;
+
+		int tempPosition = 0;
+		int tempMatchLimit = aLength - MATCH_FIND_LIMIT;
+		while (tempPosition < tempMatchLimit) {
+			int tempSequence = readInt(aSource, tempPosition);
+			int tempHash = hash(tempSequence);
+			int tempReference = aHashTable[tempHash];
+			aHashTable[tempHash] = tempPosition;
+
+			if (tempReference < 0 || tempPosition - tempReference > MAX_DISTANCE
+					|| readInt(aSource, tempReference) != tempSequence) {
+				// The longer no match is found, the larger the steps
+				tempPosition += 1 + ((tempPosition - tempAnchor) >>> SKIP_TRIGGER);
+				continue;
+			}
+
+			while (tempPosition > tempAnchor && tempReference > 0
+					&& aSource[tempPosition - 1] == aSource[tempReference - 1]) {
+				tempPosition--;
+				tempReference--;
+			}
+			int tempMatchLength = MIN_MATCH;
+			int tempMatchEndLimit = aLength - LAST_LITERALS;
+			while (tempPosition + tempMatchLength < tempMatchEndLimit
+					&& aSource[tempPosition + tempMatchLength] == aSource[tempReference + tempMatchLength]) {
+				tempMatchLength++;
+			}
+
+			tempTargetPosition = writeSequence(aSource, tempAnchor, tempPosition - tempAnchor, aTarget,
+					tempTargetPosition, tempPosition - tempReference, tempMatchLength);
+			tempPosition += tempMatchLength;
+			tempAnchor = tempPosition;
+		}
+
+		return writeSequence(aSource, tempAnchor, aLength - tempAnchor, aTarget, tempTargetPosition, 0, 0);
+	}
+
+	private static int writeSequence(byte[] aSource, int aLiteralStart, int aLiteralLength, byte[] aTarget,
+			int aTargetPosition, int aDistance, int aMatchLength) {
+		int tempTargetPosition = aTargetPosition;
+		int tempTokenPosition = tempTargetPosition++;
+		int tempToken = Math.min(aLiteralLength, RUN_MASK) << 4;
+		if (aLiteralLength >= RUN_MASK) {
+			tempTargetPosition = writeLength(aTarget, tempTargetPosition, aLiteralLength - RUN_MASK);
+		}
+		System.arraycopy(aSource, aLiteralStart, aTarget, tempTargetPosition, aLiteralLength);
+		tempTargetPosition += aLiteralLength;
+
+		if (aMatchLength > 0) {
+			aTarget[tempTargetPosition++] = (byte) aDistance;
+			aTarget[tempTargetPosition++] = (byte) (aDistance >>> 8);
+			int tempLength = aMatchLength - MIN_MATCH;
+			tempToken |= Math.min(tempLength, RUN_MASK);
+			if (tempLength >= RUN_MASK) {
+				tempTargetPosition = writeLength(aTarget, tempTargetPosition, tempLength - RUN_MASK);
+			}
+		}
+		aTarget[tempTokenPosition] = (byte) tempToken;
+		return tempTargetPosition;
+	}
+
+	private static int writeLength(byte[] aTarget, int aTargetPosition, int aLength) {
+		int tempTargetPosition = aTargetPosition;
+		int tempLength = aLength;
+		while (tempLength >= 255) {
+			aTarget[tempTargetPosition++] = (byte) 255;
+			tempLength -= 255;
+		}
+		aTarget[tempTargetPosition++] = (byte) tempLength;
+		return tempTargetPosition;
+	}
+
+	/**
+	 * Decompresses a block.
+	 *
+	 * @param aSource
+	 *            the compressed data
+	 * @param aLength
+	 *            the number of compressed bytes
+	 * @param aTarget
+	 *            the buffer receiving the uncompressed data
+	 * @param anUncompressedLength
+	 *            the expected number of uncompressed bytes
+	 * @throws IOException
+	 *             if the data is corrupt
+	 */
+	static void decompress(byte[] aSource, int aLength, byte[] aTarget, int anUncompressedLength)
+			throws IOException {
+		try {
+			int tempPosition = 0;
+			int tempTargetPosition = 0;
+			while (true) {
+				int tempToken = aSource[tempPosition++] & 0xFF;
+				int tempLiteralLength = tempToken >>> 4;
+				if (tempLiteralLength == RUN_MASK) {
+					int tempByte;
+					do {
+						tempByte = aSource[tempPosition++] & 0xFF;
+						tempLiteralLength += tempByte;
+					} while (tempByte == 255);
+				}
+				if (tempPosition + tempLiteralLength > aLength
+						|| tempTargetPosition + tempLiteralLength > anUncompressedLength) {
+					throw new ZipException("Corrupt LZ4 block");
+				}
+				System.arraycopy(aSource, tempPosition, aTarget, tempTargetPosition, tempLiteralLength);
+				tempPosition += tempLiteralLength;
+				tempTargetPosition += tempLiteralLength;
+
+				if (tempPosition == aLength) {
+					// The last sequence consists of literals only
+					break;
+				}
+
+				int tempDistance = (aSource[tempPosition] & 0xFF) | ((aSource[tempPosition + 1] & 0xFF) << 8);
+				tempPosition += 2;
+				int tempMatchLength = tempToken & RUN_MASK;
+				if (tempMatchLength == RUN_MASK) {
+					int tempByte;
+					do {
+						tempByte = aSource[tempPosition++] & 0xFF;
+						tempMatchLength += tempByte;
+					} while (tempByte == 255);
+				}
+				tempMatchLength += MIN_MATCH;
+				if (tempDistance == 0 || tempDistance > tempTargetPosition
+						|| tempTargetPosition + tempMatchLength > anUncompressedLength) {
+					throw new ZipException("Corrupt LZ4 block");
+				}
+
+				int tempReference = tempTargetPosition - tempDistance;
+				if (tempDistance >= tempMatchLength) {
+					System.arraycopy(aTarget, tempReference, aTarget, tempTargetPosition, tempMatchLength);
+					tempTargetPosition += tempMatchLength;
+				} else {
+					// Overlapping copy, which repeats the last bytes
+					for (int i = 0; i < tempMatchLength; i++) {
+						aTarget[tempTargetPosition++] = aTarget[tempReference + i];
+					}
+				}
+			}
+
+			if (tempTargetPosition != anUncompressedLength) {
+				throw new ZipException("Corrupt LZ4 block");
+			}
+		} catch (ArrayIndexOutOfBoundsException exc) {
+			throw new ZipException("Corrupt LZ4 block");
+		}
+	}
+
+	private static int readInt(byte[] aSource, int aPosition) {
+		return (aSource[aPosition] & 0xFF) | ((aSource[aPosition + 1] & 0xFF) << 8)
+				| ((aSource[aPosition + 2] & 0xFF) << 16) | ((aSource[aPosition + 3] & 0xFF) << 24);
+	}
+
+	private static int hash(int aSequence) {
+		return (aSequence * -1640531535) >>> (32 - HASH_BITS);
+	}
+
+	/**
+	 * The stream compressing the data written to it block by block.
+	 *
+	 * @author agent - initial API and implementation
+	 */
+	private static final class CompressingStream extends OutputStream {
+
+		/**
+		 * The stream receiving the compressed blocks.
+		 */
+		private final DataOutputStream target;
+
+		/**
+		 * The uncompressed data of the current block.
+		 */
+		private final byte[] block = new byte[BLOCK_SIZE];
+
+		/**
+		 * The number of bytes in {@link #block}.
+		 */
+		private int blockLength;
+
+		/**
+		 * The buffer for the compressed block.
+		 */
+		private final byte[] compressedBlock = new byte[getMaxCompressedLength(BLOCK_SIZE)];
+
+		/**
+		 * The hash table of the compressor.
+		 */
+		private final int[] hashTable = new int[1 << HASH_BITS];
+
+		/**
+		 * Whether the stream was closed.
+		 */
+		private boolean closed;
+
+		private CompressingStream(OutputStream aTarget) {
+			target = new DataOutputStream(aTarget);
+		}
+
+		@Override
+		public void write(int aByte) throws IOException {
+			if (blockLength == block.length) {
+				writeBlock();
+			}
+			block[blockLength++] = (byte) aByte;
+		}
+
+		@Override
+		public void write(byte[] aBuffer, int anOffset, int aLength) throws IOException {
+			int tempOffset = anOffset;
+			int tempRemaining = aLength;
+			while (tempRemaining > 0) {
+				if (blockLength == block.length) {
+					writeBlock();
+				}
+				int tempCount = Math.min(tempRemaining, block.length - blockLength);
+				System.arraycopy(aBuffer, tempOffset, block, blockLength, tempCount);
+				blockLength += tempCount;
+				tempOffset += tempCount;
+				tempRemaining -= tempCount;
+			}
+		}
+
+		private void writeBlock() throws IOException {
+			if (blockLength == 0) {
+				return;
+			}
+			int tempCompressedLength = compress(block, blockLength, compressedBlock, hashTable);
+			target.writeInt(blockLength);
+			if (tempCompressedLength < blockLength) {
+				target.writeInt(tempCompressedLength);
+				target.write(compressedBlock, 0, tempCompressedLength);
+			} else {
+				target.writeInt(blockLength);
+				target.write(block, 0, blockLength);
+			}
+			blockLength = 0;
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (!closed) {
+				closed = true;
+				writeBlock();
+				target.writeInt(0);
+				target.close();
+			}
+		}
+	}
+
+	/**
+	 * The stream decompressing the blocks read from the underlying stream.
+	 *
+	 * @author agent - initial API and implementation
+	 */
+	private static final class DecompressingStream extends InputStream {
+
+		/**
+		 * The stream providing the compressed blocks.
+		 */
+		private final DataInputStream source;
+
+		/**
+		 * The uncompressed data of the current block.
+		 */
+		private final byte[] block = new byte[BLOCK_SIZE];
+
+		/**
+		 * The number of bytes in {@link #block}.
+		 */
+		private int blockLength;
+
+		/**
+		 * The number of bytes of {@link #block} already read.
+		 */
+		private int blockPosition;
+
+		/**
+		 * The buffer for the compressed block.
+		 */
+		private final byte[] compressedBlock = new byte[getMaxCompressedLength(BLOCK_SIZE)];
+
+		/**
+		 * Whether the end of the data was reached.
+		 */
+		private boolean finished;
+
+		private DecompressingStream(InputStream aSource) {
+			source = new DataInputStream(aSource);
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (!ensureData()) {
+				return -1;
+			}
+			return block[blockPosition++] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] aBuffer, int anOffset, int aLength) throws IOException {
+			if (aLength == 0) {
+				return 0;
+			}
+			if (!ensureData()) {
+				return -1;
+			}
+			int tempCount = Math.min(aLength, blockLength - blockPosition);
+			System.arraycopy(block, blockPosition, aBuffer, anOffset, tempCount);
+			blockPosition += tempCount;
+			return tempCount;
+		}
+
+		@Override
+		public int available() {
+			return blockLength - blockPosition;
+		}
+
+		private boolean ensureData() throws IOException {
+			while (blockPosition == blockLength) {
+				if (finished) {
+					return false;
+				}
+				readBlock();
+			}
+			return true;
+		}
+
+		private void readBlock() throws IOException {
+			int tempLength;
+			int tempStoredLength;
+			try {
+				tempLength = source.readInt();
+				if (tempLength == 0) {
+					finished = true;
+					blockLength = 0;
+					blockPosition = 0;
+					return;
+				}
+				tempStoredLength = source.readInt();
+			} catch (EOFException exc) {
+				throw new EOFException("Unexpected end of LZ4 data");
+			}
+			if (tempLength < 0 || tempLength > BLOCK_SIZE || tempStoredLength <= 0
+					|| tempStoredLength > compressedBlock.length) {
+				throw new ZipException("Corrupt LZ4 data");
+			}
+
+			if (tempStoredLength == tempLength) {
+				source.readFully(block, 0, tempLength);
+			} else {
+				source.readFully(compressedBlock, 0, tempStoredLength);
+				decompress(compressedBlock, tempStoredLength, block, tempLength);
+			}
+			blockLength = tempLength;
+			blockPosition = 0;
+		}
+
+		@Override
+		public void close() throws IOException {
+			source.close();
+		}
+	}
+}
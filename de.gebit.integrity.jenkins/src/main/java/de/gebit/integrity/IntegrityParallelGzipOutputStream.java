@@ -0,0 +1,344 @@
+/*******************************************************************************
+ * Copyright (c) 2026 agent and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package de.gebit.integrity;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * A GZIP-compressing stream which splits the data into blocks and compresses these on all processor cores in parallel,
+ * in the way pigz does. Each block is compressed with the last {@value #DICTIONARY_SIZE} bytes of the preceding block
+ * as preset dictionary and ends on a byte boundary, so the compressed blocks simply concatenate to one ordinary GZIP
+ * stream which is barely larger than a sequentially compressed one. The checksum is calculated by the writing thread.
+ * <p>
+ * The compression threads are shared by all streams of the JVM. Each stream keeps at most one block per thread in
+ * flight, so its memory usage is bounded no matter how large the data is (see {@link #estimateMemoryUsage(long)}).
+ *
+ * @author agent - initial API and implementation
+ */
+public class IntegrityParallelGzipOutputStream extends OutputStream {
+
+	/**
+	 * The system property to set the minimum uncompressed size (in bytes) of data compressed in parallel. Set to -1 to
+	 * always compress sequentially.
+	 */
+	private static final String THRESHOLD_SYSTEM_PROPERTY = "integrity.parallelthreshold";
+
+	/**
+	 * The default minimum size of data compressed in parallel.
+	 */
+	private static final long THRESHOLD_DEFAULT = 8L * 1024 * 1024;
+
+	/**
+	 * The minimum size of data compressed in parallel. See {@link #THRESHOLD_SYSTEM_PROPERTY}.
+	 */
+	private static final long THRESHOLD = Long
+			.parseLong(System.getProperty(THRESHOLD_SYSTEM_PROPERTY, Long.toString(THRESHOLD_DEFAULT)));
+
+	/**
+	 * The number of threads compressing blocks.
+	 */
+	private static final int THREAD_COUNT = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * The number of uncompressed bytes per block.
+	 */
+	private static final int BLOCK_SIZE = 1024 * 1024;
+
+	/**
+	 * The maximum number of blocks of a stream being compressed at the same time: one per thread, plus one so the
+	 * threads don't run idle while the writing thread waits for the oldest block.
+	 */
+	private static final int MAX_PENDING_BLOCKS = THREAD_COUNT + 1;
+
+	/**
+	 * The size of the deflate window, which is the amount of preceding data used as dictionary for a block.
+	 */
+	private static final int DICTIONARY_SIZE = 32 * 1024;
+
+	/**
+	 * The size of the buffer receiving compressed data from the deflater.
+	 */
+	private static final int DEFLATE_BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * The GZIP header: magic bytes, deflate method, no flags, no modification time, no extra flags, OS unknown (as
+	 * written by {@link java.util.zip.GZIPOutputStream}).
+	 */
+	private static final byte[] GZIP_HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0 };
+
+	/**
+	 * The number of seconds after which idle compression threads are terminated.
+	 */
+	private static final long IDLE_TIMEOUT_SECONDS = 60L;
+
+	/**
+	 * The executor compressing the blocks, created on first use.
+	 */
+	private static ThreadPoolExecutor executor;
+
+	/**
+	 * The stream receiving the GZIP stream.
+	 */
+	private final OutputStream target;
+
+	/**
+	 * The compression level.
+	 */
+	private final int level;
+
+	/**
+	 * The blocks being compressed, in the order of the data.
+	 */
+	private final Queue<Future<byte[]>> pendingBlocks = new ArrayDeque<Future<byte[]>>();
+
+	/**
+	 * The checksum of the uncompressed data.
+	 */
+	private final CRC32 checksum = new CRC32();
+
+	/**
+	 * The total number of uncompressed bytes.
+	 */
+	private long totalLength;
+
+	/**
+	 * The uncompressed data of the current block.
+	 */
+	private byte[] block = new byte[BLOCK_SIZE];
+
+	/**
+	 * The number of bytes in {@link #block}.
+	 */
+	private int blockLength;
+
+	/**
+	 * The end of the preceding block, or null for the first block.
+	 */
+	private byte[] dictionary;
+
+	/**
+	 * Whether the stream was closed.
+	 */
+	private boolean closed;
+
+	/**
+	 * Creates an instance.
+	 *
+	 * @param aTarget
+	 *            the stream receiving the GZIP stream
+	 * @param aLevel
+	 *            the compression level (see {@link Deflater})
+	 * @throws IOException
+	 */
+	public IntegrityParallelGzipOutputStream(OutputStream aTarget, int aLevel) throws IOException {
+		target = aTarget;
+		level = aLevel;
+		target.write(GZIP_HEADER);
+	}
+
+	/**
+	 * Checks whether data of the given size is worth compressing in parallel. See
+	 * {@link #THRESHOLD_SYSTEM_PROPERTY}.
+	 *
+	 * @param anUncompressedLength
+	 *            the size of the data
+	 * @return true if the data should be compressed with an instance of this class
+	 */
+	public static boolean isWorthwhile(long anUncompressedLength) {
+		return THRESHOLD >= 0 && anUncompressedLength >= THRESHOLD && anUncompressedLength > BLOCK_SIZE
+				&& THREAD_COUNT > 1;
+	}
+
+	/**
+	 * Estimates the heap used by an instance while compressing data of the given size: the block being filled, plus
+	 * the blocks in flight, each together with its compressed output (which can be about as large as the block for
+	 * incompressible data).
+	 *
+	 * @param anUncompressedLength
+	 *            the size of the data
+	 * @return the estimated number of bytes, or 0 if the data isn't compressed in parallel (see
+	 *         {@link #isWorthwhile(long)})
+	 */
+	public static long estimateMemoryUsage(long anUncompressedLength) {
+		if (!isWorthwhile(anUncompressedLength)) {
+			return 0;
+		}
+		return BLOCK_SIZE + MAX_PENDING_BLOCKS * (2L * BLOCK_SIZE + DEFLATE_BUFFER_SIZE);
+	}
+
+	@Override
+	public void write(int aByte) throws IOException {
+		if (blockLength == block.length) {
+			submitBlock(false);
+		}
+		block[blockLength++] = (byte) aByte;
+	}
+
+	@Override
+	public void write(byte[] aBuffer, int anOffset, int aLength) throws IOException {
+		int tempOffset = anOffset;
+		int tempRemaining = aLength;
+		while (tempRemaining > 0) {
+			if (blockLength == block.length) {
+				submitBlock(false);
+			}
+			int tempCount = Math.min(tempRemaining, block.length - blockLength);
+			System.arraycopy(aBuffer, tempOffset, block, blockLength, tempCount);
+			blockLength += tempCount;
+			tempOffset += tempCount;
+			tempRemaining -= tempCount;
+		}
+	}
+
+	private void submitBlock(final boolean aLastBlockFlag) throws IOException {
+		final byte[] tempBlock = block;
+		final int tempBlockLength = blockLength;
+		final byte[] tempDictionary = dictionary;
+		checksum.update(tempBlock, 0, tempBlockLength);
+		totalLength += tempBlockLength;
+
+		if (!aLastBlockFlag) {
+			dictionary = Arrays.copyOfRange(tempBlock, tempBlockLength - DICTIONARY_SIZE, tempBlockLength);
+			block = new byte[BLOCK_SIZE];
+			blockLength = 0;
+		}
+
+		pendingBlocks.add(getExecutor().submit(new Callable<byte[]>() {
+
+			@Override
+			public byte[] call() {
+				return compress(tempBlock, tempBlockLength, tempDictionary, aLastBlockFlag);
+			}
+		}));
+		while (pendingBlocks.size() > MAX_PENDING_BLOCKS) {
+			writeOldestBlock();
+		}
+	}
+
+	private byte[] compress(byte[] aBlock, int aLength, byte[] aDictionary, boolean aLastBlockFlag) {
+		Deflater tempDeflater = new Deflater(level, true);
+		try {
+			if (aDictionary != null) {
+				tempDeflater.setDictionary(aDictionary);
+			}
+			tempDeflater.setInput(aBlock, 0, aLength);
+			ByteArrayOutputStream tempCompressed = new ByteArrayOutputStream(aLength / 4 + 64);
+			byte[] tempBuffer = new byte[DEFLATE_BUFFER_SIZE];
+			if (aLastBlockFlag) {
+				tempDeflater.finish();
+				while (!tempDeflater.finished()) {
+					int tempCount = tempDeflater.deflate(tempBuffer);
+					tempCompressed.write(tempBuffer, 0, tempCount);
+				}
+			} else {
+				// A sync flush ends the block on a byte boundary without ending the stream
+				int tempCount;
+				do {
+					tempCount = tempDeflater.deflate(tempBuffer, 0, tempBuffer.length, Deflater.SYNC_FLUSH);
+					tempCompressed.write(tempBuffer, 0, tempCount);
+				} while (tempCount == tempBuffer.length);
+			}
+			return tempCompressed.toByteArray();
+		} finally {
+			tempDeflater.end();
+		}
+	}
+
+	private void writeOldestBlock() throws IOException {
+		Future<byte[]> tempFuture = pendingBlocks.poll();
+		try {
+			target.write(tempFuture.get());
+		} catch (InterruptedException exc) {
+			cancelPendingBlocks();
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while compressing");
+		} catch (ExecutionException exc) {
+			cancelPendingBlocks();
+			throw new IOException("Compression failed", exc.getCause());
+		}
+	}
+
+	private void cancelPendingBlocks() {
+		for (Future<byte[]> tempFuture : pendingBlocks) {
+			tempFuture.cancel(false);
+		}
+		pendingBlocks.clear();
+	}
+
+	@Override
+	public void flush() throws IOException {
+		// Pending blocks are written as soon as their successors are compressed; forcing them out early would mean
+		// waiting for the compression threads on every flush
+		target.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			submitBlock(true);
+			while (!pendingBlocks.isEmpty()) {
+				writeOldestBlock();
+			}
+			writeIntLittleEndian((int) checksum.getValue());
+			// The length is stored modulo 2^32
+			writeIntLittleEndian((int) totalLength);
+		} finally {
+			cancelPendingBlocks();
+			block = null;
+			target.close();
+		}
+	}
+
+	private void writeIntLittleEndian(int aValue) throws IOException {
+		target.write(new byte[] { (byte) aValue, (byte) (aValue >>> 8), (byte) (aValue >>> 16),
+				(byte) (aValue >>> 24) });
+	}
+
+	private static synchronized ThreadPoolExecutor getExecutor() {
+		if (executor == null) {
+			executor = new ThreadPoolExecutor(THREAD_COUNT, THREAD_COUNT, IDLE_TIMEOUT_SECONDS, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+
+						/**
+						 * Used to number the threads.
+						 */
+						private final AtomicInteger threadNumber = new AtomicInteger();
+
+						@Override
+						public Thread newThread(Runnable aRunnable) {
+							Thread tempThread = new Thread(aRunnable,
+									"Integrity Result Compressor #" + threadNumber.incrementAndGet());
+							tempThread.setDaemon(true);
+							return tempThread;
+						}
+					});
+			executor.allowCoreThreadTimeOut(true);
+		}
+		return executor;
+	}
+}
@@ -0,0 +1,469 @@
+/*******************************************************************************
+ * Copyright (c) 2026 agent and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package de.gebit.integrity;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.logging.Logger;
+
+import org.apache.commons.io.IOUtils;
+
+import hudson.tasks.test.TestObject;
+
+/**
+ * An optional cache for parsed result files, kept on the machine where the files are parsed (usually an agent). It
+ * stores the extracted counts, the test name, the already compressed raw data and the split-out stylesheet of every
+ * parsed file, so a file which is published again (by a retried stage, or copied from another job) is neither parsed
+ * nor compressed again.
+ * <p>
+ * The cache is enabled by setting the system property {@value #CACHE_DIRECTORY_SYSTEM_PROPERTY} to a directory in the
+ * JVM which parses the files. Entries are identified by the SHA-256 hash of the file contents and the file size, so
+ * copies of a file share an entry (even across jobs, so the hash must be safe against collisions), and by the codec
+ * the raw data was compressed with, so a result is never reused with a codec other than the configured one (not even
+ * {@link IntegrityRawDataCodec#GZIP_FAST} for {@link IntegrityRawDataCodec#GZIP}). To avoid hashing
+ * unchanged files, the hash last computed for a path is remembered together with the size and modification time of
+ * the file. The least recently used entries are deleted
+ * when the cache exceeds {@value #CACHE_SIZE_SYSTEM_PROPERTY} megabytes.
+ *
+ * @author agent - initial API and implementation
+ */
+public final class IntegrityParseCache {
+
+	/**
+	 * The system property which enables the cache by naming its directory.
+	 */
+	private static final String CACHE_DIRECTORY_SYSTEM_PROPERTY = "integrity.parsecache";
+
+	/**
+	 * The system property to control the maximum size of the cache, in megabytes.
+	 */
+	private static final String CACHE_SIZE_SYSTEM_PROPERTY = "integrity.parsecachesize";
+
+	/**
+	 * The default maximum size of the cache, in megabytes.
+	 */
+	private static final int CACHE_SIZE_DEFAULT = 1024;
+
+	/**
+	 * One megabyte.
+	 */
+	private static final long MEGABYTE = 1024L * 1024L;
+
+	/**
+	 * The magic bytes at the start of every cache entry.
+	 */
+	private static final byte[] MAGIC = { 'I', 'P', 'C' };
+
+	/**
+	 * The version of the entry format.
+	 */
+	private static final byte VERSION = 5;
+
+	/**
+	 * The length of the hashes of file contents, in bytes.
+	 */
+	private static final int HASH_LENGTH = 32;
+
+	/**
+	 * The size of the buffer used to hash files.
+	 */
+	private static final int HASH_BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * The logger.
+	 */
+	private static final Logger LOGGER = Logger.getLogger(IntegrityParseCache.class.getName());
+
+	/**
+	 * The singleton instance, if the cache is enabled.
+	 */
+	private static IntegrityParseCache instance;
+
+	/**
+	 * Whether {@link #instance} was initialized.
+	 */
+	private static boolean initialized;
+
+	/**
+	 * The directory with the cached results, one file per content hash.
+	 */
+	private final File entryDirectory;
+
+	/**
+	 * The directory with the hashes last computed per path, one file per path.
+	 */
+	private final File pathDirectory;
+
+	/**
+	 * The maximum number of bytes in {@link #entryDirectory}.
+	 */
+	private final long capacity;
+
+	private IntegrityParseCache(File aDirectory, long aCapacity) {
+		entryDirectory = new File(aDirectory, "entries");
+		pathDirectory = new File(aDirectory, "paths");
+		capacity = aCapacity;
+	}
+
+	/**
+	 * Returns the cache of this JVM.
+	 *
+	 * @return the cache, or null if it is not enabled or the directory cannot be created
+	 */
+	public static synchronized IntegrityParseCache getInstance() {
+		if (!initialized) {
+			initialized = true;
+			String tempDirectory = System.getProperty(CACHE_DIRECTORY_SYSTEM_PROPERTY);
+			if (tempDirectory != null && !tempDirectory.trim().isEmpty()) {
+				String tempSize = System.getProperty(CACHE_SIZE_SYSTEM_PROPERTY, Integer.toString(CACHE_SIZE_DEFAULT));
+				IntegrityParseCache tempCache = new IntegrityParseCache(new File(tempDirectory.trim()),
+						Integer.parseInt(tempSize) * MEGABYTE);
+				tempCache.entryDirectory.mkdirs();
+				tempCache.pathDirectory.mkdirs();
+				if (tempCache.entryDirectory.isDirectory() && tempCache.pathDirectory.isDirectory()) {
+					instance = tempCache;
+				} else {
+					LOGGER.warning("Integrity parse cache directory " + tempDirectory + " cannot be created");
+				}
+			}
+		}
+		return instance;
+	}
+
+	/**
+	 * Determines the key of a file. The file is only hashed if it was changed since it was last seen.
+	 *
+	 * @param aFile
+	 *            the file
+	 * @param aCodec
+	 *            the codec the raw data is compressed with
+	 * @return the key
+	 * @throws IOException
+	 */
+	public Key computeKey(File aFile, IntegrityRawDataCodec aCodec) throws IOException {
+		String tempPath = aFile.getCanonicalPath();
+		long tempSize = aFile.length();
+		long tempLastModified = aFile.lastModified();
+
+		File tempPathFile = new File(pathDirectory, toHex(sha256(tempPath.getBytes(StandardCharsets.UTF_8))));
+		if (tempPathFile.exists()) {
+			try (DataInputStream tempIn = new DataInputStream(
+					new BufferedInputStream(new FileInputStream(tempPathFile)))) {
+				if (tempPath.equals(tempIn.readUTF()) && tempIn.readLong() == tempSize
+						&& tempIn.readLong() == tempLastModified) {
+					byte[] tempHash = new byte[HASH_LENGTH];
+					tempIn.readFully(tempHash);
+					return new Key(tempPath, tempSize, tempLastModified, tempHash, aCodec, false);
+				}
+			} catch (IOException exc) {
+				// Treated like a file which was changed
+			}
+		}
+
+		MessageDigest tempDigest = createDigest();
+		byte[] tempBuffer = new byte[HASH_BUFFER_SIZE];
+		try (InputStream tempIn = new FileInputStream(aFile)) {
+			int tempCount;
+			while ((tempCount = tempIn.read(tempBuffer)) >= 0) {
+				tempDigest.update(tempBuffer, 0, tempCount);
+			}
+		}
+		return new Key(tempPath, tempSize, tempLastModified, tempDigest.digest(), aCodec, true);
+	}
+
+	/**
+	 * Loads a cached result.
+	 *
+	 * @param aKey
+	 *            the key of the parsed file
+	 * @param aResultName
+	 *            the name of the result
+	 * @param aParent
+	 *            the parent of the result
+	 * @return the result, or null if the file isn't cached
+	 * @throws IOException
+	 */
+	public IntegrityTestResult load(Key aKey, String aResultName, TestObject aParent) throws IOException {
+		File tempEntryFile = getEntryFile(aKey);
+		if (!tempEntryFile.exists()) {
+			return null;
+		}
+
+		IntegrityTestResult tempResult;
+		try (DataInputStream tempIn = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(tempEntryFile)))) {
+			byte[] tempMagic = new byte[MAGIC.length];
+			tempIn.readFully(tempMagic);
+			if (!Arrays.equals(tempMagic, MAGIC) || tempIn.readByte() != VERSION || tempIn.readLong() != aKey.size) {
+				// Written by another version, or a broken entry; it'll be overwritten
+				return null;
+			}
+			byte[] tempHash = new byte[HASH_LENGTH];
+			tempIn.readFully(tempHash);
+			if (!Arrays.equals(tempHash, aKey.hash) || !aKey.codec.name().equals(tempIn.readUTF())) {
+				return null;
+			}
+
+			String tempDisplayName = readString(tempIn);
+			String tempContentType = readString(tempIn);
+			int tempPassCount = tempIn.readInt();
+			int tempFailCount = tempIn.readInt();
+			int tempTestExceptionCount = tempIn.readInt();
+			int tempCallExceptionCount = tempIn.readInt();
+			byte[] tempCompressedData = new byte[tempIn.readInt()];
+			tempIn.readFully(tempCompressedData);
+			long tempStylesheetOffset = tempIn.readLong();
+			int tempStylesheetLength = tempIn.readInt();
+			byte[] tempStylesheet = null;
+			if (tempStylesheetLength >= 0) {
+				tempStylesheet = new byte[tempStylesheetLength];
+				tempIn.readFully(tempStylesheet);
+			}
+
+			tempResult = new IntegrityTestResult(aParent, aResultName, tempDisplayName, null, tempContentType,
+					tempPassCount, tempFailCount, tempTestExceptionCount, tempCallExceptionCount);
+			tempResult.setCompressedRawData(tempCompressedData);
+			tempResult.setStylesheet(tempStylesheetOffset, tempStylesheet);
+		}
+
+		// Mark as recently used
+		tempEntryFile.setLastModified(System.currentTimeMillis());
+		rememberPath(aKey);
+		return tempResult;
+	}
+
+	/**
+	 * Adds a freshly parsed result to the cache.
+	 *
+	 * @param aKey
+	 *            the key of the parsed file
+	 * @param aResult
+	 *            the result
+	 * @throws IOException
+	 */
+	public void store(Key aKey, IntegrityTestResult aResult) throws IOException {
+		if (!aResult.hasRawData()) {
+			return;
+		}
+
+		File tempEntryFile = getEntryFile(aKey);
+		File tempTempFile = File.createTempFile(tempEntryFile.getName(), ".tmp", entryDirectory);
+		try {
+			try (DataOutputStream tempOut = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(tempTempFile)));
+					InputStream tempIn = aResult.openStoredRawData()) {
+				tempOut.write(MAGIC);
+				tempOut.writeByte(VERSION);
+				tempOut.writeLong(aKey.size);
+				tempOut.write(aKey.hash);
+				tempOut.writeUTF(aKey.codec.name());
+				writeString(tempOut, aResult.getDisplayName());
+				writeString(tempOut, aResult.getContentType());
+				tempOut.writeInt(aResult.getPassCount());
+				tempOut.writeInt(aResult.getFailCount());
+				tempOut.writeInt(aResult.getTestExceptionCount());
+				tempOut.writeInt(aResult.getCallExceptionCount());
+				tempOut.writeInt((int) aResult.getStoredRawDataLength());
+				IOUtils.copy(tempIn, tempOut);
+				tempOut.writeLong(aResult.getStylesheetOffset());
+				if (aResult.hasStylesheet()) {
+					try (InputStream tempStylesheetIn = aResult.openStylesheet()) {
+						byte[] tempStylesheet = IOUtils.toByteArray(tempStylesheetIn);
+						tempOut.writeInt(tempStylesheet.length);
+						tempOut.write(tempStylesheet);
+					}
+				} else {
+					tempOut.writeInt(-1);
+				}
+			}
+			Files.move(tempTempFile.toPath(), tempEntryFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(tempTempFile.toPath());
+		}
+
+		rememberPath(aKey);
+	}
+
+	/**
+	 * Deletes the least recently used entries until the cache is within its size limit again, and forgets the paths
+	 * not seen since the oldest remaining entry was used.
+	 */
+	public synchronized void prune() {
+		File[] tempEntryFiles = entryDirectory.listFiles();
+		if (tempEntryFiles == null) {
+			return;
+		}
+
+		long tempSize = 0;
+		for (File tempFile : tempEntryFiles) {
+			tempSize += tempFile.length();
+		}
+		if (tempSize <= capacity) {
+			return;
+		}
+
+		Arrays.sort(tempEntryFiles, new Comparator<File>() {
+
+			@Override
+			public int compare(File aFirstFile, File aSecondFile) {
+				return Long.compare(aFirstFile.lastModified(), aSecondFile.lastModified());
+			}
+		});
+		long tempOldestKept = 0;
+		for (File tempFile : tempEntryFiles) {
+			if (tempSize <= capacity) {
+				tempOldestKept = tempFile.lastModified();
+				break;
+			}
+			tempSize -= tempFile.length();
+			tempFile.delete();
+		}
+
+		File[] tempPathFiles = pathDirectory.listFiles();
+		if (tempPathFiles != null) {
+			for (File tempFile : tempPathFiles) {
+				if (tempFile.lastModified() < tempOldestKept) {
+					tempFile.delete();
+				}
+			}
+		}
+	}
+
+	private File getEntryFile(Key aKey) {
+		return new File(entryDirectory, aKey.size + "-" + toHex(aKey.hash) + "-" + aKey.codec.name());
+	}
+
+	/**
+	 * Remembers the hash of the file at a path, if it was computed.
+	 */
+	private void rememberPath(Key aKey) throws IOException {
+		File tempPathFile = new File(pathDirectory, toHex(sha256(aKey.path.getBytes(StandardCharsets.UTF_8))));
+		if (!aKey.isNew) {
+			tempPathFile.setLastModified(System.currentTimeMillis());
+			return;
+		}
+
+		File tempTempFile = File.createTempFile(tempPathFile.getName(), ".tmp", pathDirectory);
+		try {
+			try (DataOutputStream tempOut = new DataOutputStream(new FileOutputStream(tempTempFile))) {
+				tempOut.writeUTF(aKey.path);
+				tempOut.writeLong(aKey.size);
+				tempOut.writeLong(aKey.lastModified);
+				tempOut.write(aKey.hash);
+			}
+			Files.move(tempTempFile.toPath(), tempPathFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(tempTempFile.toPath());
+		}
+	}
+
+	private static MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException exc) {
+			// SHA-256 is guaranteed to exist in every JRE
+			throw new RuntimeException(exc);
+		}
+	}
+
+	private static byte[] sha256(byte[] someBytes) {
+		return createDigest().digest(someBytes);
+	}
+
+	private static String toHex(byte[] someBytes) {
+		StringBuilder tempBuilder = new StringBuilder(someBytes.length * 2);
+		for (byte tempByte : someBytes) {
+			tempBuilder.append(String.format("%02x", tempByte & 0xFF));
+		}
+		return tempBuilder.toString();
+	}
+
+	private static void writeString(DataOutputStream aTarget, String aString) throws IOException {
+		if (aString == null) {
+			aTarget.writeInt(-1);
+		} else {
+			byte[] tempBytes = aString.getBytes(StandardCharsets.UTF_8);
+			aTarget.writeInt(tempBytes.length);
+			aTarget.write(tempBytes);
+		}
+	}
+
+	private static String readString(DataInputStream aSource) throws IOException {
+		int tempLength = aSource.readInt();
+		if (tempLength < 0) {
+			return null;
+		}
+		byte[] tempBytes = new byte[tempLength];
+		aSource.readFully(tempBytes);
+		return new String(tempBytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Identifies the contents of a file.
+	 *
+	 * @author agent - initial API and implementation
+	 */
+	public static final class Key {
+
+		/**
+		 * The canonical path of the file.
+		 */
+		private final String path;
+
+		/**
+		 * The size of the file.
+		 */
+		private final long size;
+
+		/**
+		 * The modification time of the file.
+		 */
+		private final long lastModified;
+
+		/**
+		 * The SHA-256 hash of the contents.
+		 */
+		private final byte[] hash;
+
+		/**
+		 * The codec the raw data is compressed with.
+		 */
+		private final IntegrityRawDataCodec codec;
+
+		/**
+		 * Whether the hash was computed, instead of taken from the remembered hash of the path.
+		 */
+		private final boolean isNew;
+
+		private Key(String aPath, long aSize, long aLastModified, byte[] aHash, IntegrityRawDataCodec aCodec,
+				boolean anIsNew) {
+			path = aPath;
+			size = aSize;
+			lastModified = aLastModified;
+			hash = aHash;
+			codec = aCodec;
+			isNew = anIsNew;
+		}
+	}
+}
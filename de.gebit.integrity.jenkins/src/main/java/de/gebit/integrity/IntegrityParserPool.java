@@ -0,0 +1,315 @@
+/*******************************************************************************
+ * Copyright (c) 2026 agent and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package de.gebit.integrity;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The pool of threads used to parse Integrity result files. There is only one pool per JVM (so one per agent), which
+ * bounds the total parsing concurrency on a node no matter how many builds publish results at the same time. The
+ * threads are created lazily and die off when idle.
+ * <p>
+ * Every call to the parser gets its own {@link Batch} of tasks. The pool threads serve the batches in a round-robin
+ * fashion, so a build publishing hundreds of files does not starve a build which publishes just a few.
+ * <p>
+ * The pool also manages a memory budget (a fraction of the maximum heap size). Files are only admitted to parsing while
+ * the estimated heap usage of all files being parsed stays within that budget.
+ *
+ * @author agent - initial API and implementation
+ */
+public final class IntegrityParserPool {
+
+	/**
+	 * The system property to control the maximum number of threads used to parse results.
+	 */
+	private static final String MAX_PARSER_THREADS_SYSTEM_PROPERTY = "integrity.threadcount";
+
+	/**
+	 * The default number of threads to use when parsing results.
+	 */
+	private static final int MAX_PARSER_THREADS_DEFAULT = 16;
+
+	/**
+	 * The actual number of threads used when parsing results. Will be whatever is smaller: either the number of
+	 * processor cores, or whatever is configured via system property {@link #MAX_PARSER_THREADS_SYSTEM_PROPERTY} (if
+	 * nothing is configured, the default {@link #MAX_PARSER_THREADS_DEFAULT} is used).
+	 */
+	private static final int MAX_PARSER_THREADS = Math.min(Integer.parseInt(
+			System.getProperty(MAX_PARSER_THREADS_SYSTEM_PROPERTY, Integer.toString(MAX_PARSER_THREADS_DEFAULT))),
+			Runtime.getRuntime().availableProcessors());
+
+	/**
+	 * The system property to control the fraction of the maximum heap size which may be occupied by result files being
+	 * parsed at the same time.
+	 */
+	private static final String MEMORY_FRACTION_SYSTEM_PROPERTY = "integrity.heapfraction";
+
+	/**
+	 * The default fraction of the maximum heap size which may be occupied by result files being parsed.
+	 */
+	private static final double MEMORY_FRACTION_DEFAULT = 0.25;
+
+	/**
+	 * The number of seconds after which idle parser threads are terminated.
+	 */
+	private static final long IDLE_TIMEOUT_SECONDS = 60L;
+
+	/**
+	 * The singleton instance, created on first use.
+	 */
+	private static IntegrityParserPool instance;
+
+	/**
+	 * The executor providing the threads.
+	 */
+	private final ThreadPoolExecutor executor;
+
+	/**
+	 * The number of bytes of heap which may be occupied by result files being parsed at the same time.
+	 */
+	private final long memoryBudget;
+
+	/**
+	 * The number of bytes of the memory budget currently in use. Guarded by {@link #memoryLock}.
+	 */
+	private long memoryInUse;
+
+	/**
+	 * The lock for the memory budget.
+	 */
+	private final Object memoryLock = new Object();
+
+	/**
+	 * The batches which currently have tasks waiting for execution, in the order they will be served. Guarded by the
+	 * pool instance.
+	 */
+	private final Queue<Batch> waitingBatches = new ArrayDeque<Batch>();
+
+	private IntegrityParserPool(int aThreadCount, long aMemoryBudget) {
+		memoryBudget = aMemoryBudget;
+		executor = new ThreadPoolExecutor(aThreadCount, aThreadCount, IDLE_TIMEOUT_SECONDS, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+
+					/**
+					 * Used to number the threads.
+					 */
+					private final AtomicInteger threadNumber = new AtomicInteger();
+
+					@Override
+					public Thread newThread(Runnable aRunnable) {
+						Thread tempThread = new Thread(aRunnable,
+								"Integrity Result Parser #" + threadNumber.incrementAndGet());
+						tempThread.setDaemon(true);
+						return tempThread;
+					}
+				});
+		executor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Returns the pool of this JVM, creating it if necessary.
+	 *
+	 * @return the pool
+	 */
+	public static synchronized IntegrityParserPool getInstance() {
+		if (instance == null) {
+			double tempFraction = Double.parseDouble(System.getProperty(MEMORY_FRACTION_SYSTEM_PROPERTY,
+					Double.toString(MEMORY_FRACTION_DEFAULT)));
+			instance = new IntegrityParserPool(Math.max(1, MAX_PARSER_THREADS),
+					(long) (Runtime.getRuntime().maxMemory() * tempFraction));
+		}
+		return instance;
+	}
+
+	/**
+	 * Returns the maximum number of threads used by this pool.
+	 *
+	 * @return the thread count
+	 */
+	public int getThreadCount() {
+		return executor.getMaximumPoolSize();
+	}
+
+	/**
+	 * Returns the number of bytes of heap which may be occupied by result files being parsed at the same time.
+	 *
+	 * @return the memory budget
+	 */
+	public long getMemoryBudget() {
+		return memoryBudget;
+	}
+
+	/**
+	 * Reserves the given amount of the memory budget if it is available right now. A single reservation exceeding the
+	 * whole budget is granted if nothing else is reserved at the moment, since it could never be granted otherwise.
+	 *
+	 * @param aByteCount
+	 *            the number of bytes to reserve
+	 * @return true if the memory was reserved, false if not enough of the budget is available
+	 */
+	public boolean tryAcquireMemory(long aByteCount) {
+		synchronized (memoryLock) {
+			if (memoryInUse > 0 && memoryInUse + aByteCount > memoryBudget) {
+				return false;
+			}
+			memoryInUse += aByteCount;
+			return true;
+		}
+	}
+
+	/**
+	 * Reserves the given amount of the memory budget, waiting until it becomes available if necessary.
+	 *
+	 * @param aByteCount
+	 *            the number of bytes to reserve
+	 */
+	public void acquireMemory(long aByteCount) {
+		boolean tempInterrupted = false;
+		synchronized (memoryLock) {
+			while (!tryAcquireMemory(aByteCount)) {
+				try {
+					memoryLock.wait();
+				} catch (InterruptedException exc) {
+					// keep waiting, but remember to restore the flag
+					tempInterrupted = true;
+				}
+			}
+		}
+		if (tempInterrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Returns a reservation made via {@link #tryAcquireMemory(long)} or {@link #acquireMemory(long)}.
+	 *
+	 * @param aByteCount
+	 *            the number of bytes reserved
+	 */
+	public void releaseMemory(long aByteCount) {
+		synchronized (memoryLock) {
+			memoryInUse -= aByteCount;
+			memoryLock.notifyAll();
+		}
+	}
+
+	/**
+	 * Creates a new batch of tasks.
+	 *
+	 * @return the batch
+	 */
+	public Batch createBatch() {
+		return new Batch();
+	}
+
+	/**
+	 * Enqueues a task of the given batch.
+	 */
+	private void submit(Batch aBatch, Runnable aTask) {
+		synchronized (this) {
+			if (aBatch.tasks.isEmpty()) {
+				waitingBatches.add(aBatch);
+			}
+			aBatch.tasks.add(aTask);
+		}
+
+		// Every submitted task adds exactly one dispatch to the executor queue, so there's always a dispatch for every
+		// task - but which task a dispatch runs is decided when it is executed.
+		executor.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				runNextTask();
+			}
+		});
+	}
+
+	/**
+	 * Runs the next task of the batch whose turn it is.
+	 */
+	private void runNextTask() {
+		Batch tempBatch;
+		Runnable tempTask;
+		synchronized (this) {
+			tempBatch = waitingBatches.poll();
+			if (tempBatch == null) {
+				return;
+			}
+			tempTask = tempBatch.tasks.poll();
+			if (!tempBatch.tasks.isEmpty()) {
+				// Back to the end of the line
+				waitingBatches.add(tempBatch);
+			}
+		}
+
+		try {
+			tempTask.run();
+		} finally {
+			tempBatch.taskFinished();
+		}
+	}
+
+	/**
+	 * A batch of tasks belonging together, usually all result files of one publishing step.
+	 *
+	 * @author agent - initial API and implementation
+	 */
+	public final class Batch {
+
+		/**
+		 * The tasks waiting for execution. Guarded by the pool.
+		 */
+		private final Queue<Runnable> tasks = new ArrayDeque<Runnable>();
+
+		/**
+		 * The number of tasks submitted, but not finished yet. Guarded by the batch.
+		 */
+		private int pendingTasks;
+
+		private Batch() {
+			// created by the pool only
+		}
+
+		/**
+		 * Submits a task for execution.
+		 *
+		 * @param aTask
+		 *            the task
+		 */
+		public void submit(Runnable aTask) {
+			synchronized (this) {
+				pendingTasks++;
+			}
+			IntegrityParserPool.this.submit(this, aTask);
+		}
+
+		/**
+		 * Waits until all tasks submitted so far have finished.
+		 *
+		 * @throws InterruptedException
+		 */
+		public synchronized void await() throws InterruptedException {
+			while (pendingTasks > 0) {
+				wait();
+			}
+		}
+
+		private synchronized void taskFinished() {
+			pendingTasks--;
+			if (pendingTasks == 0) {
+				notifyAll();
+			}
+		}
+	}
+}
@@ -7,10 +7,25 @@
  *******************************************************************************/
 package de.gebit.integrity;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
 import hudson.model.Action;
 import hudson.model.Job;
+import hudson.model.Result;
 import hudson.model.Run;
-import hudson.util.RunList;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONNull;
+import net.sf.json.JSONObject;
 
 /**
  * The project action for Integrity Test Results. This class is responsible for displaying the Integrity overview on the
@@ -20,6 +35,29 @@ import hudson.util.RunList;
  */
 public class IntegrityProjectAction implements Action {
 
+	/**
+	 * The fields of a trend point which can be requested from {@link #doTrendData(StaplerRequest, StaplerResponse)}.
+	 */
+	private static final List<String> TREND_FIELDS = Arrays.asList("number", "timestamp", "passCount", "failCount",
+			"skipCount", "testExceptionCount", "callExceptionCount", "passChildCount", "failChildCount",
+			"exceptionChildCount", "label", "url");
+
+	/**
+	 * The default number of trend points per page.
+	 */
+	private static final int TREND_PAGE_SIZE_DEFAULT = 100;
+
+	/**
+	 * The maximum number of trend points per page.
+	 */
+	private static final int TREND_PAGE_SIZE_MAX = 1000;
+
+	/**
+	 * The number of the newest build with results per job, or 0 if the job has no (relevant) results. Jobs which are
+	 * not in here must be searched. Guarded by itself.
+	 */
+	private static final Map<Job<?, ?>, Integer> LATEST_RESULT_BUILD_NUMBERS = new WeakHashMap<Job<?, ?>, Integer>();
+
 	/**
 	 * The project.
 	 */
@@ -64,14 +102,153 @@ public class IntegrityProjectAction implements Action {
 	 * @return
 	 */
 	public IntegrityHistory getTrend() {
-		RunList<?> tempRuns = job.getBuilds();
-		return new IntegrityHistory(tempRuns);
+		return new IntegrityHistory(job);
 	}
 
 	/**
-	 * Returns the newest available results.
+	 * Serves the trend data of the project as JSON, for client-side charts. The data is read from the trend index, so
+	 * no builds are loaded. The points are sorted from newest to oldest build and paginated with a cursor: each page
+	 * contains a "nextCursor" if there are older builds, which is passed as parameter "cursor" to get the next page.
+	 * Further parameters are "limit" (the maximum number of points per page) and "fields" (a comma-separated list of
+	 * the fields to include; all by default). The child counts of builds recorded by older versions are null.
+	 * 
+	 * @param aRequest
+	 *            the request
+	 * @param aResponse
+	 *            the response
+	 * @throws IOException
+	 */
+	public void doTrendData(StaplerRequest aRequest, StaplerResponse aResponse) throws IOException {
+		List<String> tempFields = TREND_FIELDS;
+		String tempFieldParameter = aRequest.getParameter("fields");
+		if (tempFieldParameter != null) {
+			tempFields = new ArrayList<String>();
+			for (String tempField : tempFieldParameter.split(",")) {
+				tempField = tempField.trim();
+				if (!TREND_FIELDS.contains(tempField)) {
+					aResponse.sendError(HttpServletResponse.SC_BAD_REQUEST, "Unknown field: " + tempField);
+					return;
+				}
+				tempFields.add(tempField);
+			}
+		}
+
+		int tempLimit;
+		int tempCursor;
+		try {
+			String tempLimitParameter = aRequest.getParameter("limit");
+			tempLimit = (tempLimitParameter == null) ? TREND_PAGE_SIZE_DEFAULT
+					: Math.max(1, Math.min(TREND_PAGE_SIZE_MAX, Integer.parseInt(tempLimitParameter)));
+			String tempCursorParameter = aRequest.getParameter("cursor");
+			tempCursor = (tempCursorParameter == null) ? Integer.MAX_VALUE : Integer.parseInt(tempCursorParameter);
+		} catch (NumberFormatException exc) {
+			aResponse.sendError(HttpServletResponse.SC_BAD_REQUEST, exc.getMessage());
+			return;
+		}
+
+		if (aRequest.checkIfModified(IntegrityTrendIndex.getLastModified(job), aResponse)) {
+			return;
+		}
+
+		// The cursor is the number of the last build returned; the next page starts with the next older build
+		List<IntegrityTrendIndex.Entry> tempEntries = IntegrityTrendIndex.getEntries(job);
+		int tempStart = 0;
+		while (tempStart < tempEntries.size() && tempEntries.get(tempStart).getBuildNumber() >= tempCursor) {
+			tempStart++;
+		}
+		int tempEnd = Math.min(tempEntries.size(), tempStart + tempLimit);
+
+		JSONArray tempPoints = new JSONArray();
+		for (IntegrityTrendIndex.Entry tempEntry : tempEntries.subList(tempStart, tempEnd)) {
+			JSONObject tempPoint = new JSONObject();
+			for (String tempField : tempFields) {
+				tempPoint.element(tempField, getTrendField(tempEntry, tempField));
+			}
+			tempPoints.add(tempPoint);
+		}
+
+		JSONObject tempData = new JSONObject();
+		tempData.element("points", tempPoints);
+		if (tempEnd < tempEntries.size()) {
+			tempData.element("nextCursor", tempEntries.get(tempEnd - 1).getBuildNumber());
+		}
+
+		aResponse.setContentType("application/json;charset=UTF-8");
+		tempData.write(aResponse.getWriter());
+	}
+
+	private Object getTrendField(IntegrityTrendIndex.Entry anEntry, String aField) {
+		switch (aField) {
+		case "number":
+			return anEntry.getBuildNumber();
+		case "timestamp":
+			return anEntry.getTimestamp();
+		case "passCount":
+			return anEntry.getPassCount();
+		case "failCount":
+			return anEntry.getFailCount();
+		case "skipCount":
+			return anEntry.getSkipCount();
+		case "testExceptionCount":
+			return anEntry.getTestExceptionCount();
+		case "callExceptionCount":
+			return anEntry.getCallExceptionCount();
+		case "passChildCount":
+			return getChildCount(anEntry.getPassChildCount());
+		case "failChildCount":
+			return getChildCount(anEntry.getFailChildCount());
+		case "exceptionChildCount":
+			return getChildCount(anEntry.getExceptionChildCount());
+		case "label":
+			return anEntry.getLabel();
+		case "url":
+			return IntegrityHistory.getResultUrl(job, anEntry.getBuildNumber());
+		default:
+			throw new IllegalArgumentException("Unknown field: " + aField);
+		}
+	}
+
+	/**
+	 * Converts a child count of the trend index for JSON, where unknown counts are null.
+	 */
+	private static Object getChildCount(int aCount) {
+		return (aCount == IntegrityTrendIndex.UNKNOWN_COUNT) ? JSONNull.getInstance() : aCount;
+	}
+
+	/**
+	 * Returns the newest available results. The build containing them is remembered, so usually no builds need to be
+	 * searched.
 	 */
 	public IntegrityTestResultAction getLatestResults() {
+		Integer tempBuildNumber;
+		synchronized (LATEST_RESULT_BUILD_NUMBERS) {
+			tempBuildNumber = LATEST_RESULT_BUILD_NUMBERS.get(job);
+		}
+
+		if (tempBuildNumber != null) {
+			if (tempBuildNumber == 0) {
+				return null;
+			}
+			Run<?, ?> tempBuild = job.getBuildByNumber(tempBuildNumber);
+			IntegrityTestResultAction tempResultAction = (tempBuild != null)
+					? tempBuild.getAction(IntegrityTestResultAction.class) : null;
+			if (tempResultAction != null) {
+				return tempResultAction;
+			}
+		}
+
+		IntegrityTestResultAction tempResultAction = findLatestResults();
+		synchronized (LATEST_RESULT_BUILD_NUMBERS) {
+			LATEST_RESULT_BUILD_NUMBERS.put(job, (tempResultAction != null) ? tempResultAction.run.getNumber() : 0);
+		}
+		return tempResultAction;
+	}
+
+	/**
+	 * Searches the newest available results, starting with the last build. Results older than the last successful
+	 * build are not considered.
+	 */
+	private IntegrityTestResultAction findLatestResults() {
 		final Run<?, ?> tempLastSuccessfulBuild = job.getLastSuccessfulBuild();
 		Run<?, ?> tempBuild = job.getLastBuild();
 		while (tempBuild != null) {
@@ -86,4 +263,40 @@ public class IntegrityProjectAction implements Action {
 
 		return null;
 	}
+
+	/**
+	 * Updates the remembered newest results of the job of a build which recorded results or finished.
+	 * 
+	 * @param aRun
+	 *            the build
+	 */
+	static void buildUpdated(Run<?, ?> aRun) {
+		boolean tempHasResults = aRun.getAction(IntegrityTestResultAction.class) != null;
+		synchronized (LATEST_RESULT_BUILD_NUMBERS) {
+			Integer tempBuildNumber = LATEST_RESULT_BUILD_NUMBERS.get(aRun.getParent());
+			if (tempBuildNumber != null && tempBuildNumber > aRun.getNumber()) {
+				// An older build finished late; it doesn't change anything
+				return;
+			}
+			if (tempHasResults) {
+				LATEST_RESULT_BUILD_NUMBERS.put(aRun.getParent(), aRun.getNumber());
+			} else if (aRun.getResult() != null && aRun.getResult().isBetterOrEqualTo(Result.UNSTABLE)) {
+				// Results older than the last successful build (which includes unstable ones) are not shown
+				LATEST_RESULT_BUILD_NUMBERS.remove(aRun.getParent());
+			}
+		}
+	}
+
+	/**
+	 * Forgets the remembered newest results of the job of a deleted build. Even if they don't belong to that build, the
+	 * deleted build may have been the last successful one which limited the search, so they are searched again.
+	 * 
+	 * @param aRun
+	 *            the build
+	 */
+	static void buildDeleted(Run<?, ?> aRun) {
+		synchronized (LATEST_RESULT_BUILD_NUMBERS) {
+			LATEST_RESULT_BUILD_NUMBERS.remove(aRun.getParent());
+		}
+	}
 }
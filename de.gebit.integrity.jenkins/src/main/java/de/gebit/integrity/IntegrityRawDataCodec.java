@@ -0,0 +1,234 @@
+/*******************************************************************************
+ * Copyright (c) 2026 agent and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package de.gebit.integrity;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The codecs the raw data of results can be compressed with. The identifier of the codec is stored in the header of
+ * the raw data (see {@link IntegrityRawDataWriter}), so data compressed with any codec can always be read, no matter
+ * which codec is configured at the moment.
+ *
+ * @author agent - initial API and implementation
+ */
+public enum IntegrityRawDataCodec {
+
+	/**
+	 * A plain GZIP stream. This is the default, since it can be sent to clients without recompression, while data of
+	 * the other codecs is sent uncompressed.
+	 */
+	GZIP((byte) 1, "GZIP (default)") {
+
+		@Override
+		public OutputStream createCompressor(OutputStream aTarget, int anUncompressedLength) throws IOException {
+			return createGzipCompressor(aTarget, anUncompressedLength, Deflater.DEFAULT_COMPRESSION);
+		}
+	},
+
+	/**
+	 * A plain GZIP stream compressed at the fastest level. This is stored under the identifier of {@link #GZIP}, since
+	 * the data is read the same way.
+	 */
+	GZIP_FAST((byte) 1, "GZIP, fastest level") {
+
+		@Override
+		public OutputStream createCompressor(OutputStream aTarget, int anUncompressedLength) throws IOException {
+			return createGzipCompressor(aTarget, anUncompressedLength, Deflater.BEST_SPEED);
+		}
+	},
+
+	/**
+	 * A zlib stream compressed with a preset dictionary (see {@link IntegrityDictionaryCodec}), which compresses small
+	 * reports much better.
+	 */
+	DICTIONARY((byte) 2, "Preset dictionary (best for small reports)") {
+
+		@Override
+		public OutputStream createCompressor(OutputStream aTarget, int anUncompressedLength) throws IOException {
+			return IntegrityDictionaryCodec.createCompressor(aTarget);
+		}
+
+		@Override
+		public InputStream createDecompressor(InputStream aSource) throws IOException {
+			return IntegrityDictionaryCodec.createDecompressor(aSource);
+		}
+	},
+
+	/**
+	 * LZ4 blocks (see {@link IntegrityLz4Codec}), which are compressed and decompressed several times faster than GZIP,
+	 * at the cost of larger files.
+	 */
+	LZ4((byte) 3, "LZ4 (fastest, larger files)") {
+
+		@Override
+		public OutputStream createCompressor(OutputStream aTarget, int anUncompressedLength) throws IOException {
+			return IntegrityLz4Codec.createCompressor(aTarget);
+		}
+
+		@Override
+		public InputStream createDecompressor(InputStream aSource) throws IOException {
+			return IntegrityLz4Codec.createDecompressor(aSource);
+		}
+	};
+
+	/**
+	 * The system property to choose the codec for new raw data where none is configured: the name of one of the
+	 * constants of this enum, ignoring case. Defaults to {@link #GZIP}.
+	 */
+	private static final String CODEC_SYSTEM_PROPERTY = "integrity.codec";
+
+	/**
+	 * The size of the stream buffers.
+	 */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * The identifier stored in the raw data header.
+	 */
+	private final byte id;
+
+	/**
+	 * The name displayed in the configuration.
+	 */
+	private final String displayName;
+
+	IntegrityRawDataCodec(byte anId, String aDisplayName) {
+		id = anId;
+		displayName = aDisplayName;
+	}
+
+	public byte getId() {
+		return id;
+	}
+
+	public String getDisplayName() {
+		return displayName;
+	}
+
+	/**
+	 * Checks whether the compressed data is a GZIP stream, which can be sent to clients as-is.
+	 *
+	 * @return true if the data is a GZIP stream
+	 */
+	public boolean isGzip() {
+		return id == GZIP.id;
+	}
+
+	/**
+	 * Creates a stream which compresses everything written to it.
+	 *
+	 * @param aTarget
+	 *            the stream to write the compressed data to
+	 * @param anUncompressedLength
+	 *            the number of bytes that will be written
+	 * @return the compressing stream
+	 * @throws IOException
+	 */
+	public abstract OutputStream createCompressor(OutputStream aTarget, int anUncompressedLength) throws IOException;
+
+	/**
+	 * Creates a stream which decompresses data compressed by {@link #createCompressor(OutputStream, int)}.
+	 *
+	 * @param aSource
+	 *            the stream to read the compressed data from
+	 * @return the decompressing stream
+	 * @throws IOException
+	 */
+	public InputStream createDecompressor(InputStream aSource) throws IOException {
+		return new GZIPInputStream(aSource, BUFFER_SIZE);
+	}
+
+	/**
+	 * Estimates the heap used by a compressor of this codec in addition to the compressed data, which is significant
+	 * when large data is compressed in parallel (see
+	 * {@link IntegrityParallelGzipOutputStream#estimateMemoryUsage(long)}).
+	 *
+	 * @param anUncompressedLength
+	 *            the number of bytes that will be written
+	 * @return the estimated number of bytes
+	 */
+	public long estimateCompressorMemoryUsage(long anUncompressedLength) {
+		return isGzip() ? IntegrityParallelGzipOutputStream.estimateMemoryUsage(anUncompressedLength) : 0;
+	}
+
+	/**
+	 * Creates a GZIP-compressing stream. Large data is compressed on all cores (see
+	 * {@link IntegrityParallelGzipOutputStream}), which yields a GZIP stream as well.
+	 *
+	 * @param aTarget
+	 *            the stream to write the compressed data to
+	 * @param anUncompressedLength
+	 *            the number of bytes that will be written
+	 * @param aLevel
+	 *            the compression level
+	 * @return the compressing stream
+	 * @throws IOException
+	 */
+	private static OutputStream createGzipCompressor(OutputStream aTarget, int anUncompressedLength, final int aLevel)
+			throws IOException {
+		if (IntegrityParallelGzipOutputStream.isWorthwhile(anUncompressedLength)) {
+			return new IntegrityParallelGzipOutputStream(aTarget, aLevel);
+		}
+		return new GZIPOutputStream(aTarget, BUFFER_SIZE) {
+
+			{
+				def.setLevel(aLevel);
+			}
+		};
+	}
+
+	/**
+	 * Returns the codec stored under the given identifier.
+	 *
+	 * @param anId
+	 *            the identifier from the raw data header
+	 * @return the codec, or null if the identifier is unknown
+	 */
+	public static IntegrityRawDataCodec forId(byte anId) {
+		for (IntegrityRawDataCodec tempCodec : values()) {
+			if (tempCodec.id == anId) {
+				return tempCodec;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the codec used for new raw data where none is configured. See {@link #CODEC_SYSTEM_PROPERTY}.
+	 *
+	 * @return the codec
+	 */
+	public static IntegrityRawDataCodec getDefault() {
+		return parse(System.getProperty(CODEC_SYSTEM_PROPERTY), GZIP);
+	}
+
+	/**
+	 * Parses a codec, ignoring case.
+	 *
+	 * @param aName
+	 *            the name of the codec
+	 * @param aDefault
+	 *            the codec to use if the name is null, empty or unknown
+	 * @return the codec
+	 */
+	public static IntegrityRawDataCodec parse(String aName, IntegrityRawDataCodec aDefault) {
+		if (aName != null) {
+			for (IntegrityRawDataCodec tempCodec : values()) {
+				if (tempCodec.name().equalsIgnoreCase(aName.trim())) {
+					return tempCodec;
+				}
+			}
+		}
+		return aDefault;
+	}
+}
@@ -0,0 +1,180 @@
+/*******************************************************************************
+ * Copyright (c) 2026 agent and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package de.gebit.integrity;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.apache.commons.io.output.CountingOutputStream;
+
+/**
+ * A stream which compresses everything written to it into the format of the raw data of results: the header (see
+ * {@link IntegrityTestResult#writeRawDataHeader(OutputStream, int, IntegrityRawDataCodec)}) followed by the data,
+ * compressed with the chosen codec.
+ * <p>
+ * The stylesheet split out of the data (see {@link IntegrityStylesheetSplitter}) is compressed into a stream of its
+ * own, and the data around it into two separately finished streams. With the GZIP codecs, these are GZIP members,
+ * which make up the complete report when simply concatenated - so a report can be sent to clients without any
+ * recompression, even though its stylesheet is stored elsewhere.
+ * <p>
+ * This allows callers to compress data while it is being read, without having to hold the uncompressed data in memory.
+ * Exactly the announced number of bytes (including the stylesheet) must be written before closing the stream.
+ *
+ * @author agent - initial API and implementation
+ */
+public final class IntegrityRawDataWriter extends OutputStream {
+
+	/**
+	 * The size of the buffer collecting small writes before they're compressed.
+	 */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * The stream receiving the stored raw data, counting its bytes.
+	 */
+	private final CountingOutputStream target;
+
+	/**
+	 * The codec compressing the data.
+	 */
+	private final IntegrityRawDataCodec codec;
+
+	/**
+	 * The announced number of uncompressed bytes.
+	 */
+	private final int uncompressedLength;
+
+	/**
+	 * The compressing stream of the current part of the data.
+	 */
+	private OutputStream compressor;
+
+	/**
+	 * The number of uncompressed bytes written so far, including the stylesheet.
+	 */
+	private long writtenLength;
+
+	/**
+	 * The position in the stored raw data at which the compressed stylesheet belongs.
+	 */
+	private long stylesheetOffset;
+
+	/**
+	 * The compressed stylesheet, or null if none was split out.
+	 */
+	private byte[] compressedStylesheet;
+
+	/**
+	 * Whether the stream was closed.
+	 */
+	private boolean closed;
+
+	/**
+	 * Creates an instance.
+	 *
+	 * @param aTarget
+	 *            the stream receiving the stored raw data
+	 * @param anUncompressedLength
+	 *            the number of bytes that will be written, including the stylesheet
+	 * @param aCodec
+	 *            the codec to compress the data with
+	 * @throws IOException
+	 */
+	public IntegrityRawDataWriter(OutputStream aTarget, int anUncompressedLength, IntegrityRawDataCodec aCodec)
+			throws IOException {
+		target = new CountingOutputStream(aTarget);
+		codec = aCodec;
+		uncompressedLength = anUncompressedLength;
+		IntegrityTestResult.writeRawDataHeader(target, anUncompressedLength, aCodec);
+		compressor = openCompressor();
+	}
+
+	private OutputStream openCompressor() throws IOException {
+		// Every part is finished separately, without closing the target
+		return new BufferedOutputStream(codec.createCompressor(new CloseShieldOutputStream(target),
+				(int) (uncompressedLength - writtenLength)), BUFFER_SIZE);
+	}
+
+	@Override
+	public void write(int aByte) throws IOException {
+		compressor.write(aByte);
+		writtenLength++;
+	}
+
+	@Override
+	public void write(byte[] aBuffer, int anOffset, int aLength) throws IOException {
+		compressor.write(aBuffer, anOffset, aLength);
+		writtenLength += aLength;
+	}
+
+	/**
+	 * Takes the stylesheet which belongs at the current position of the data. It is compressed separately, and the
+	 * data following it goes into a new compressed stream.
+	 *
+	 * @param someStylesheet
+	 *            the uncompressed stylesheet
+	 * @throws IOException
+	 */
+	public void writeStylesheet(byte[] someStylesheet) throws IOException {
+		if (compressedStylesheet != null) {
+			throw new IllegalStateException("Only one stylesheet can be split out");
+		}
+
+		compressor.close();
+		stylesheetOffset = target.getByteCount();
+
+		ByteArrayOutputStream tempCompressedStylesheet = new ByteArrayOutputStream(someStylesheet.length / 4 + 64);
+		try (OutputStream tempStylesheetCompressor = codec.createCompressor(tempCompressedStylesheet,
+				someStylesheet.length)) {
+			tempStylesheetCompressor.write(someStylesheet);
+		}
+		compressedStylesheet = tempCompressedStylesheet.toByteArray();
+		writtenLength += someStylesheet.length;
+
+		compressor = openCompressor();
+	}
+
+	@Override
+	public void flush() throws IOException {
+		compressor.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			compressor.close();
+		} finally {
+			target.close();
+		}
+	}
+
+	/**
+	 * Returns the position in the stored raw data (including the header) at which the compressed stylesheet belongs.
+	 *
+	 * @return the position, or 0 if no stylesheet was split out
+	 */
+	public long getStylesheetOffset() {
+		return stylesheetOffset;
+	}
+
+	/**
+	 * Returns the stylesheet compressed with the codec of the data, as a stream of its own.
+	 *
+	 * @return the compressed stylesheet, or null if none was split out
+	 */
+	public byte[] getCompressedStylesheet() {
+		return compressedStylesheet;
+	}
+}
@@ -0,0 +1,251 @@
+/*******************************************************************************
+ * Copyright (c) 2026 agent and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package de.gebit.integrity;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.acegisecurity.Authentication;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+import hudson.PluginWrapper;
+import hudson.model.Run;
+import jenkins.model.Jenkins;
+
+/**
+ * Handles the HTTP caching headers and conditional requests for the result pages. Results of a completed build never
+ * change, so their validators can be derived from the identity of the build and the result alone - which allows to
+ * answer conditional requests with "304 Not Modified" before any result data is loaded.
+ * <p>
+ * Results of builds which are still running are not cached at all.
+ *
+ * @author agent - initial API and implementation
+ */
+public final class IntegrityResponseCaching {
+
+	/**
+	 * The system property to control how long (in seconds) browsers may cache raw reports without revalidation.
+	 */
+	private static final String CACHE_MAX_AGE_SYSTEM_PROPERTY = "integrity.cachemaxage";
+
+	/**
+	 * The default time (in seconds) browsers may cache raw reports: one year, which is the usual maximum.
+	 */
+	private static final long CACHE_MAX_AGE_DEFAULT = 365L * 24L * 60L * 60L;
+
+	/**
+	 * The actual time (in seconds) browsers may cache raw reports.
+	 */
+	private static final long CACHE_MAX_AGE = Long.parseLong(
+			System.getProperty(CACHE_MAX_AGE_SYSTEM_PROPERTY, Long.toString(CACHE_MAX_AGE_DEFAULT)));
+
+	/**
+	 * The suffix added to entity tags of GZIP-encoded representations.
+	 */
+	public static final String GZIP_SUFFIX = "-gzip";
+
+	/**
+	 * The short name of this plugin, used to look up its version.
+	 */
+	private static final String PLUGIN_SHORT_NAME = "de.gebit.integrity.jenkins";
+
+	private IntegrityResponseCaching() {
+		// static methods only
+	}
+
+	/**
+	 * Sets the caching headers for a raw report and checks whether the client already has the current version. Raw
+	 * reports are identical for all users, but they're not public.
+	 *
+	 * @param aRun
+	 *            the build the report belongs to
+	 * @param aResultName
+	 *            the name of the result, as used in the URL
+	 * @param aGzipEncoded
+	 *            whether the report will be sent GZIP-encoded
+	 * @param aRequest
+	 *            the request
+	 * @param aResponse
+	 *            the response
+	 * @return true if "304 Not Modified" was sent and nothing else must be sent, false if the report must be sent
+	 */
+	public static boolean checkReport(Run<?, ?> aRun, String aResultName, boolean aGzipEncoded,
+			StaplerRequest aRequest, StaplerResponse aResponse) {
+		if (!isCacheable(aRun)) {
+			return false;
+		}
+
+		String tempTag = computeTag(aRun, "report", aResultName);
+		return check("\"" + tempTag + (aGzipEncoded ? GZIP_SUFFIX : "") + "\"", getLastModified(aRun),
+				"private, max-age=" + CACHE_MAX_AGE + ", immutable", aRequest, aResponse);
+	}
+
+	/**
+	 * Sets the caching headers for the result overview page and checks whether the client already has the current
+	 * version. The page contains the usual Jenkins page decoration, which depends on the user, so the entity tag is
+	 * weak and user-specific, and the client has to revalidate every time.
+	 *
+	 * @param aRun
+	 *            the build the results belong to
+	 * @param aRequest
+	 *            the request
+	 * @param aResponse
+	 *            the response
+	 * @return true if "304 Not Modified" was sent and nothing else must be sent, false if the page must be sent
+	 */
+	public static boolean checkOverview(Run<?, ?> aRun, StaplerRequest aRequest, StaplerResponse aResponse) {
+		if (!isCacheable(aRun)) {
+			return false;
+		}
+
+		// The build record is saved whenever something shown in the page decoration changes, like the description
+		long tempLastModified = Math.max(getLastModified(aRun),
+				new File(aRun.getRootDir(), "build.xml").lastModified());
+		tempLastModified -= tempLastModified % 1000L;
+
+		Authentication tempAuthentication = Jenkins.getAuthentication();
+		String tempTag = computeTag(aRun, "overview", Long.toString(tempLastModified),
+				(tempAuthentication != null ? tempAuthentication.getName() : ""), Jenkins.VERSION,
+				getPluginVersion());
+		return check("W/\"" + tempTag + "\"", tempLastModified, "private, max-age=0, must-revalidate", aRequest,
+				aResponse);
+	}
+
+	/**
+	 * Checks whether the client accepts GZIP-encoded content, according to the Accept-Encoding header.
+	 *
+	 * @param aRequest
+	 *            the request
+	 * @return true if GZIP-encoded content may be sent
+	 */
+	public static boolean acceptsGzip(StaplerRequest aRequest) {
+		String tempAcceptEncoding = aRequest.getHeader("Accept-Encoding");
+		if (tempAcceptEncoding == null) {
+			return false;
+		}
+
+		for (String tempEncoding : tempAcceptEncoding.split(",")) {
+			String[] tempParts = tempEncoding.split(";");
+			String tempName = tempParts[0].trim();
+			if ("gzip".equalsIgnoreCase(tempName) || "x-gzip".equalsIgnoreCase(tempName)) {
+				for (int i = 1; i < tempParts.length; i++) {
+					String tempParameter = tempParts[i].replace(" ", "");
+					if (tempParameter.matches("(?i)q=0(\\.0*)?")) {
+						// explicitly refused
+						return false;
+					}
+				}
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Returns the version of this plugin, since an update may change the page even if the build didn't.
+	 */
+	private static String getPluginVersion() {
+		PluginWrapper tempPlugin = Jenkins.get().getPluginManager().getPlugin(PLUGIN_SHORT_NAME);
+		return tempPlugin != null ? tempPlugin.getVersion() : "";
+	}
+
+	private static boolean isCacheable(Run<?, ?> aRun) {
+		return aRun != null && !aRun.isBuilding();
+	}
+
+	/**
+	 * Returns the point in time when the results of the given build were finished, which is when the build was.
+	 * Truncated to seconds, since that's the precision of HTTP dates.
+	 */
+	private static long getLastModified(Run<?, ?> aRun) {
+		long tempTime = aRun.getTimeInMillis() + aRun.getDuration();
+		return tempTime - (tempTime % 1000L);
+	}
+
+	/**
+	 * Computes an opaque tag from the identity of the build (including its timestamp, so a build that is deleted and
+	 * recreated under the same number won't match) and the given parts.
+	 */
+	private static String computeTag(Run<?, ?> aRun, String... someParts) {
+		try {
+			MessageDigest tempDigest = MessageDigest.getInstance("SHA-1");
+			tempDigest.update(aRun.getExternalizableId().getBytes(StandardCharsets.UTF_8));
+			tempDigest.update((byte) 0);
+			tempDigest.update(Long.toString(aRun.getTimeInMillis()).getBytes(StandardCharsets.UTF_8));
+			for (String tempPart : someParts) {
+				tempDigest.update((byte) 0);
+				tempDigest.update(String.valueOf(tempPart).getBytes(StandardCharsets.UTF_8));
+			}
+
+			StringBuilder tempBuilder = new StringBuilder();
+			for (byte tempByte : tempDigest.digest()) {
+				tempBuilder.append(String.format("%02x", tempByte & 0xFF));
+			}
+			return tempBuilder.toString();
+		} catch (NoSuchAlgorithmException exc) {
+			// SHA-1 is guaranteed to exist in every JRE
+			throw new RuntimeException(exc);
+		}
+	}
+
+	/**
+	 * Sets the validator and caching headers and answers the request with "304 Not Modified" if the client already has
+	 * the current version.
+	 */
+	private static boolean check(String anETag, long aLastModified, String aCacheControl, StaplerRequest aRequest,
+			StaplerResponse aResponse) {
+		aResponse.setHeader("ETag", anETag);
+		aResponse.setDateHeader("Last-Modified", aLastModified);
+		aResponse.setHeader("Cache-Control", aCacheControl);
+
+		if (isNotModified(anETag, aLastModified, aRequest)) {
+			aResponse.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return true;
+		}
+		return false;
+	}
+
+	private static boolean isNotModified(String anETag, long aLastModified, StaplerRequest aRequest) {
+		String tempIfNoneMatch = aRequest.getHeader("If-None-Match");
+		if (tempIfNoneMatch != null) {
+			// If-None-Match takes precedence over If-Modified-Since, and is evaluated using the weak comparison. Both
+			// encodings of a report are considered equal, since they carry the same content.
+			String tempOwnTag = normalizeTag(anETag);
+			for (String tempTag : tempIfNoneMatch.split(",")) {
+				tempTag = tempTag.trim();
+				if ("*".equals(tempTag) || tempOwnTag.equals(normalizeTag(tempTag))) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		long tempIfModifiedSince;
+		try {
+			tempIfModifiedSince = aRequest.getDateHeader("If-Modified-Since");
+		} catch (IllegalArgumentException exc) {
+			// not a valid date
+			return false;
+		}
+		return tempIfModifiedSince >= 0 && aLastModified <= tempIfModifiedSince;
+	}
+
+	private static String normalizeTag(String aTag) {
+		String tempTag = aTag.startsWith("W/") ? aTag.substring(2) : aTag;
+		if (tempTag.endsWith(GZIP_SUFFIX + "\"")) {
+			tempTag = tempTag.substring(0, tempTag.length() - GZIP_SUFFIX.length() - 1) + "\"";
+		}
+		return tempTag;
+	}
+}
@@ -0,0 +1,254 @@
+/*******************************************************************************
+ * Copyright (c) 2026 agent and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package de.gebit.integrity;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * The cache for the single results of builds which were loaded from disk. There is only one cache per JVM, which is
+ * limited to a configurable number of bytes (estimated heap usage). When the limit is exceeded, the results of the
+ * builds which were not used for the longest time are dropped; they are simply loaded again when needed.
+ * <p>
+ * Results are identified by the build directory they belong to. Loading is single-flight: no matter how many requests
+ * ask for the results of a build at the same time, they are loaded only once.
+ *
+ * @author agent - initial API and implementation
+ */
+public final class IntegrityResultCache {
+
+	/**
+	 * The system property to control the size of the cache, in megabytes.
+	 */
+	private static final String CACHE_SIZE_SYSTEM_PROPERTY = "integrity.cachesize";
+
+	/**
+	 * The default size of the cache, in megabytes.
+	 */
+	private static final int CACHE_SIZE_DEFAULT = 64;
+
+	/**
+	 * One megabyte.
+	 */
+	private static final long MEGABYTE = 1024L * 1024L;
+
+	/**
+	 * The singleton instance, created on first use.
+	 */
+	private static IntegrityResultCache instance;
+
+	/**
+	 * The maximum number of bytes kept in the cache.
+	 */
+	private final long capacity;
+
+	/**
+	 * The cached entries, in the order of their last use. Guarded by the cache instance.
+	 */
+	private final LinkedHashMap<File, Entry> entries = new LinkedHashMap<File, Entry>(16, 0.75f, true);
+
+	/**
+	 * The loads currently in progress. Guarded by the cache instance.
+	 */
+	private final Map<File, FutureTask<IntegrityResultIndex>> loading = new HashMap<>();
+
+	/**
+	 * The number of bytes currently kept in the cache. Guarded by the cache instance.
+	 */
+	private long size;
+
+	/**
+	 * The number of lookups which found an entry. Guarded by the cache instance.
+	 */
+	private long hitCount;
+
+	/**
+	 * The number of lookups which didn't find an entry. Guarded by the cache instance.
+	 */
+	private long missCount;
+
+	/**
+	 * The number of entries dropped to make room for others. Guarded by the cache instance.
+	 */
+	private long evictionCount;
+
+	private IntegrityResultCache(long aCapacity) {
+		capacity = aCapacity;
+	}
+
+	/**
+	 * Returns the cache of this JVM, creating it if necessary.
+	 *
+	 * @return the cache
+	 */
+	public static synchronized IntegrityResultCache getInstance() {
+		if (instance == null) {
+			instance = new IntegrityResultCache(Integer.parseInt(
+					System.getProperty(CACHE_SIZE_SYSTEM_PROPERTY, Integer.toString(CACHE_SIZE_DEFAULT))) * MEGABYTE);
+		}
+		return instance;
+	}
+
+	/**
+	 * Looks up the results of a build, loading them if they're not in the cache. Only one load per build happens at a
+	 * time: callers asking for results which are being loaded by another thread wait for that load and share its
+	 * outcome.
+	 *
+	 * @param aBuildDirectory
+	 *            the directory of the build
+	 * @param aLoader
+	 *            loads the results if necessary
+	 * @return the indexed results
+	 */
+	public IntegrityResultIndex get(File aBuildDirectory, Callable<IntegrityResultIndex> aLoader) {
+		FutureTask<IntegrityResultIndex> tempLoad;
+		boolean tempIsLoading = false;
+		synchronized (this) {
+			Entry tempEntry = entries.get(aBuildDirectory);
+			if (tempEntry != null) {
+				hitCount++;
+				return tempEntry.results;
+			}
+
+			tempLoad = loading.get(aBuildDirectory);
+			if (tempLoad == null) {
+				missCount++;
+				tempLoad = new FutureTask<IntegrityResultIndex>(aLoader);
+				loading.put(aBuildDirectory, tempLoad);
+				tempIsLoading = true;
+			} else {
+				// Somebody else is already loading the results
+				hitCount++;
+			}
+		}
+
+		if (tempIsLoading) {
+			try {
+				tempLoad.run();
+			} finally {
+				synchronized (this) {
+					if (loading.remove(aBuildDirectory) == tempLoad && tempLoad.isDone()) {
+						try {
+							put(aBuildDirectory, tempLoad.get());
+						} catch (InterruptedException | ExecutionException exc) {
+							// the load failed, so there's nothing to cache - the callers will see the exception
+						}
+					}
+				}
+			}
+		}
+
+		return await(tempLoad);
+	}
+
+	/**
+	 * Waits for a load to finish, without giving up when interrupted.
+	 */
+	private static IntegrityResultIndex await(FutureTask<IntegrityResultIndex> aLoad) {
+		boolean tempInterrupted = false;
+		try {
+			while (true) {
+				try {
+					return aLoad.get();
+				} catch (InterruptedException exc) {
+					// keep waiting, but remember to restore the flag
+					tempInterrupted = true;
+				} catch (ExecutionException exc) {
+					if (exc.getCause() instanceof RuntimeException) {
+						throw (RuntimeException) exc.getCause();
+					}
+					throw new RuntimeException(exc.getCause());
+				}
+			}
+		} finally {
+			if (tempInterrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Adds the results of a build to the cache, dropping the least recently used entries if necessary. Results which
+	 * are larger than the whole cache are not added at all.
+	 *
+	 * @param aBuildDirectory
+	 *            the directory of the build
+	 * @param someResults
+	 *            the indexed results
+	 */
+	public synchronized void put(File aBuildDirectory, IntegrityResultIndex someResults) {
+		long tempSize = someResults.estimateMemoryUsage();
+
+		remove(aBuildDirectory);
+		if (tempSize > capacity) {
+			return;
+		}
+
+		Iterator<Entry> tempIterator = entries.values().iterator();
+		while (size + tempSize > capacity && tempIterator.hasNext()) {
+			size -= tempIterator.next().size;
+			tempIterator.remove();
+			evictionCount++;
+		}
+
+		entries.put(aBuildDirectory, new Entry(someResults, tempSize));
+		size += tempSize;
+	}
+
+	/**
+	 * Removes the results of a build from the cache, for example because they have been replaced.
+	 *
+	 * @param aBuildDirectory
+	 *            the directory of the build
+	 */
+	public synchronized void remove(File aBuildDirectory) {
+		Entry tempEntry = entries.remove(aBuildDirectory);
+		if (tempEntry != null) {
+			size -= tempEntry.size;
+		}
+	}
+
+	/**
+	 * Returns a human-readable description of the state of the cache and its effectiveness.
+	 *
+	 * @return the statistics
+	 */
+	public synchronized String getStatistics() {
+		return Messages.resultCacheStatistics(entries.size(), (size + MEGABYTE - 1) / MEGABYTE, capacity / MEGABYTE,
+				hitCount, missCount, evictionCount);
+	}
+
+	/**
+	 * An entry in the cache.
+	 *
+	 * @author agent - initial API and implementation
+	 */
+	private static final class Entry {
+
+		/**
+		 * The results.
+		 */
+		private final IntegrityResultIndex results;
+
+		/**
+		 * The estimated heap usage of the results, in bytes.
+		 */
+		private final long size;
+
+		private Entry(IntegrityResultIndex someResults, long aSize) {
+			results = someResults;
+			size = aSize;
+		}
+	}
+}
@@ -0,0 +1,339 @@
+/*******************************************************************************
+ * Copyright (c) 2026 agent and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package de.gebit.integrity;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads and writes the binary container file which stores all single results of a build. The file consists of
+ * <ul>
+ * <li>a fixed-size header: magic bytes, format version, number of results and size of the metadata table,</li>
+ * <li>the metadata table: for every result its name, display name, content type, counts, the hash and length of its
+ * raw data and the hash and position of the stylesheet split out of it.</li>
+ * </ul>
+ * The raw data itself is kept in the {@link IntegrityBlobStore} of the job, in the same compressed format as kept in
+ * memory, so identical reports of different builds are stored only once.
+ * <p>
+ * The metadata table is read with a single positional read, and the raw data of a result is only read when it is
+ * needed, again via positional reads. Nothing is encoded, so reading and writing is mostly I/O.
+ *
+ * @author agent - initial API and implementation
+ */
+public final class IntegrityResultContainer {
+
+	/**
+	 * The magic bytes at the start of the file.
+	 */
+	private static final byte[] MAGIC = { 'I', 'R', 'C' };
+
+	/**
+	 * The version of the file format.
+	 */
+	private static final byte VERSION = 1;
+
+	/**
+	 * The size of the header: magic bytes, version, number of results and size of the metadata table.
+	 */
+	private static final int HEADER_SIZE = MAGIC.length + 1 + 4 + 4;
+
+	private IntegrityResultContainer() {
+		// static methods only
+	}
+
+	/**
+	 * Writes the given results into a container file. The raw data of the results is added to the blob store of the
+	 * job, and the references held by the container which is replaced are released. The file is replaced atomically,
+	 * and afterwards the raw data of the results is no longer kept in memory, but read from the blob store when needed.
+	 *
+	 * @param aFile
+	 *            the container file
+	 * @param aJobDirectory
+	 *            the directory of the job, which contains the blob store
+	 * @param someResults
+	 *            the results to write
+	 * @throws IOException
+	 */
+	public static void write(File aFile, File aJobDirectory, List<IntegrityTestResult> someResults)
+			throws IOException {
+		List<String> tempOldHashes = new ArrayList<String>();
+		if (aFile.exists()) {
+			try {
+				read(aFile, aJobDirectory, tempOldHashes);
+			} catch (IOException exc) {
+				// A broken container can't hold references we could release
+				exc.printStackTrace();
+			}
+		}
+
+		String[] tempHashes = new String[someResults.size()];
+		long[] tempLengths = new long[someResults.size()];
+		String[] tempStylesheetHashes = new String[someResults.size()];
+		List<String> tempNewHashes = new ArrayList<String>();
+		try {
+			ByteArrayOutputStream tempTableBytes = new ByteArrayOutputStream();
+			DataOutputStream tempTable = new DataOutputStream(tempTableBytes);
+			for (int i = 0; i < someResults.size(); i++) {
+				IntegrityTestResult tempResult = someResults.get(i);
+				if (tempResult.hasRawData()) {
+					tempHashes[i] = IntegrityBlobStore.addReference(aJobDirectory, tempResult);
+					tempLengths[i] = tempResult.getStoredRawDataLength();
+					tempNewHashes.add(tempHashes[i]);
+				}
+				if (tempResult.hasStylesheet()) {
+					tempStylesheetHashes[i] = IntegrityBlobStore.addStylesheetReference(aJobDirectory, tempResult);
+					tempNewHashes.add(tempStylesheetHashes[i]);
+				}
+
+				writeString(tempTable, tempResult.getName());
+				writeString(tempTable, tempResult.getDisplayName());
+				writeString(tempTable, tempResult.getContentType());
+				tempTable.writeInt(tempResult.getPassCount());
+				tempTable.writeInt(tempResult.getFailCount());
+				tempTable.writeInt(tempResult.getTestExceptionCount());
+				tempTable.writeInt(tempResult.getCallExceptionCount());
+				writeString(tempTable, tempHashes[i]);
+				tempTable.writeLong(tempLengths[i]);
+				writeString(tempTable, tempStylesheetHashes[i]);
+				tempTable.writeLong(tempResult.getStylesheetOffset());
+			}
+			tempTable.close();
+
+			File tempTempFile = new File(aFile.getParentFile(), aFile.getName() + ".tmp");
+			try {
+				try (DataOutputStream tempOut = new DataOutputStream(
+						new BufferedOutputStream(new FileOutputStream(tempTempFile)))) {
+					tempOut.write(MAGIC);
+					tempOut.writeByte(VERSION);
+					tempOut.writeInt(someResults.size());
+					tempOut.writeInt(tempTableBytes.size());
+					tempTableBytes.writeTo(tempOut);
+				}
+				Files.move(tempTempFile.toPath(), aFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+			} finally {
+				Files.deleteIfExists(tempTempFile.toPath());
+			}
+		} catch (IOException exc) {
+			IntegrityBlobStore.removeReferences(aJobDirectory, tempNewHashes);
+			throw exc;
+		}
+
+		// The new references are in place, so blobs shared with the old container survive this
+		IntegrityBlobStore.removeReferences(aJobDirectory, tempOldHashes);
+
+		for (int i = 0; i < someResults.size(); i++) {
+			if (tempHashes[i] != null) {
+				someResults.get(i).setStoredRawData(IntegrityBlobStore.getBlobFile(aJobDirectory, tempHashes[i]), 0,
+						tempLengths[i]);
+			}
+			if (tempStylesheetHashes[i] != null) {
+				someResults.get(i).setStoredStylesheet(
+						IntegrityBlobStore.getBlobFile(aJobDirectory, tempStylesheetHashes[i]),
+						someResults.get(i).getStylesheetOffset());
+			}
+		}
+	}
+
+	/**
+	 * Reads the results from a container file. Only the metadata is read; the raw data stays on disk until needed.
+	 *
+	 * @param aFile
+	 *            the container file
+	 * @param aJobDirectory
+	 *            the directory of the job, which contains the blob store
+	 * @return the results (without parent)
+	 * @throws IOException
+	 */
+	public static List<IntegrityTestResult> read(File aFile, File aJobDirectory) throws IOException {
+		return read(aFile, aJobDirectory, new ArrayList<String>());
+	}
+
+	/**
+	 * Releases the references a container file holds in the blob store of the job. This is to be called when the
+	 * build owning the container is deleted.
+	 *
+	 * @param aFile
+	 *            the container file
+	 * @param aJobDirectory
+	 *            the directory of the job, which contains the blob store
+	 * @throws IOException
+	 */
+	public static void release(File aFile, File aJobDirectory) throws IOException {
+		if (aFile.exists()) {
+			List<String> tempHashes = new ArrayList<String>();
+			read(aFile, aJobDirectory, tempHashes);
+			IntegrityBlobStore.removeReferences(aJobDirectory, tempHashes);
+		}
+	}
+
+	private static List<IntegrityTestResult> read(File aFile, File aJobDirectory, List<String> someHashesTarget)
+			throws IOException {
+		try (FileChannel tempChannel = FileChannel.open(aFile.toPath(), StandardOpenOption.READ)) {
+			ByteBuffer tempHeader = ByteBuffer.allocate(HEADER_SIZE);
+			readFully(tempChannel, tempHeader, 0);
+			tempHeader.flip();
+			for (int i = 0; i < MAGIC.length; i++) {
+				if (tempHeader.get() != MAGIC[i]) {
+					throw new IOException(aFile + " is not an Integrity result container");
+				}
+			}
+			byte tempVersion = tempHeader.get();
+			if (tempVersion != VERSION) {
+				throw new IOException(aFile + " has unsupported version " + tempVersion);
+			}
+			int tempCount = tempHeader.getInt();
+			int tempTableSize = tempHeader.getInt();
+			if (tempCount < 0 || tempTableSize < 0 || HEADER_SIZE + (long) tempTableSize > tempChannel.size()) {
+				throw new IOException(aFile + " is corrupt");
+			}
+
+			ByteBuffer tempTable = ByteBuffer.allocate(tempTableSize);
+			readFully(tempChannel, tempTable, HEADER_SIZE);
+			tempTable.flip();
+
+			List<IntegrityTestResult> tempResults = new ArrayList<IntegrityTestResult>();
+			for (int i = 0; i < tempCount; i++) {
+				String tempName = readString(tempTable);
+				String tempDisplayName = readString(tempTable);
+				String tempContentType = readString(tempTable);
+				int tempSuccessCount = tempTable.getInt();
+				int tempFailureCount = tempTable.getInt();
+				int tempTestExceptionCount = tempTable.getInt();
+				int tempCallExceptionCount = tempTable.getInt();
+
+				IntegrityTestResult tempResult = new IntegrityTestResult(null, tempName, tempDisplayName, null,
+						tempContentType, tempSuccessCount, tempFailureCount, tempTestExceptionCount,
+						tempCallExceptionCount);
+				String tempHash = readString(tempTable);
+				long tempLength = tempTable.getLong();
+				if (tempHash != null) {
+					someHashesTarget.add(tempHash);
+					tempResult.setStoredRawData(IntegrityBlobStore.getBlobFile(aJobDirectory, tempHash), 0,
+							tempLength);
+				}
+				String tempStylesheetHash = readString(tempTable);
+				long tempStylesheetOffset = tempTable.getLong();
+				if (tempStylesheetHash != null) {
+					someHashesTarget.add(tempStylesheetHash);
+					tempResult.setStoredStylesheet(IntegrityBlobStore.getBlobFile(aJobDirectory, tempStylesheetHash),
+							tempStylesheetOffset);
+				}
+				tempResults.add(tempResult);
+			}
+
+			return tempResults;
+		} catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException exc) {
+			throw new IOException(aFile + " is corrupt", exc);
+		}
+	}
+
+	/**
+	 * Opens a stream on a part of a blob file, which reads via positional reads.
+	 *
+	 * @param aFile
+	 *            the file
+	 * @param anOffset
+	 *            the position of the first byte
+	 * @param aLength
+	 *            the number of bytes
+	 * @return the stream
+	 * @throws IOException
+	 */
+	public static InputStream open(final File aFile, final long anOffset, final long aLength) throws IOException {
+		final FileChannel tempChannel = FileChannel.open(aFile.toPath(), StandardOpenOption.READ);
+		return new InputStream() {
+
+			/**
+			 * The number of bytes read so far.
+			 */
+			private long position;
+
+			@Override
+			public int read() throws IOException {
+				byte[] tempByte = new byte[1];
+				return (read(tempByte, 0, 1) < 0) ? -1 : (tempByte[0] & 0xFF);
+			}
+
+			@Override
+			public int read(byte[] aBuffer, int anOffsetInBuffer, int aCount) throws IOException {
+				if (position >= aLength) {
+					return -1;
+				}
+				int tempCount = (int) Math.min(aCount, aLength - position);
+				int tempRead = tempChannel.read(ByteBuffer.wrap(aBuffer, anOffsetInBuffer, tempCount),
+						anOffset + position);
+				if (tempRead < 0) {
+					throw new EOFException(aFile + " is truncated");
+				}
+				position += tempRead;
+				return tempRead;
+			}
+
+			@Override
+			public long skip(long aCount) {
+				long tempCount = Math.max(0, Math.min(aCount, aLength - position));
+				position += tempCount;
+				return tempCount;
+			}
+
+			@Override
+			public int available() {
+				return (int) Math.min(Integer.MAX_VALUE, aLength - position);
+			}
+
+			@Override
+			public void close() throws IOException {
+				tempChannel.close();
+			}
+		};
+	}
+
+	private static void readFully(FileChannel aChannel, ByteBuffer aBuffer, long aPosition) throws IOException {
+		while (aBuffer.hasRemaining()) {
+			if (aChannel.read(aBuffer, aPosition + aBuffer.position()) < 0) {
+				throw new EOFException("Container file is truncated");
+			}
+		}
+	}
+
+	private static void writeString(DataOutputStream aTarget, String aString) throws IOException {
+		if (aString == null) {
+			aTarget.writeInt(-1);
+		} else {
+			byte[] tempBytes = aString.getBytes(StandardCharsets.UTF_8);
+			aTarget.writeInt(tempBytes.length);
+			aTarget.write(tempBytes);
+		}
+	}
+
+	private static String readString(ByteBuffer aSource) {
+		int tempLength = aSource.getInt();
+		if (tempLength < 0) {
+			return null;
+		}
+		String tempString = new String(aSource.array(), aSource.position(), tempLength, StandardCharsets.UTF_8);
+		aSource.position(aSource.position() + tempLength);
+		return tempString;
+	}
+}
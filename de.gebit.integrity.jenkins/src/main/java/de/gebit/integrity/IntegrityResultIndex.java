@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * Copyright (c) 2026 agent and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package de.gebit.integrity;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The single results of a build, together with an index which resolves them by their URL-safe name. The index is
+ * built once, so looking up a result for a request doesn't have to walk all results and compute their IDs.
+ *
+ * @author agent - initial API and implementation
+ */
+public final class IntegrityResultIndex {
+
+	/**
+	 * The estimated heap usage of one index entry, in bytes.
+	 */
+	private static final int ESTIMATED_ENTRY_SIZE = 64;
+
+	/**
+	 * The results, in display order.
+	 */
+	private final List<IntegrityTestResult> results;
+
+	/**
+	 * The results by their safe name. If multiple results share a safe name, the first one wins.
+	 */
+	private final Map<String, IntegrityTestResult> resultsBySafeName;
+
+	/**
+	 * Creates an index over the given results. The list is not copied.
+	 *
+	 * @param someResults
+	 *            the results, in display order
+	 */
+	public IntegrityResultIndex(List<IntegrityTestResult> someResults) {
+		results = someResults;
+		resultsBySafeName = new HashMap<String, IntegrityTestResult>(someResults.size() * 4 / 3 + 1);
+		for (IntegrityTestResult tempResult : someResults) {
+			String tempSafeName = tempResult.getSafeName();
+			if (tempSafeName != null && !resultsBySafeName.containsKey(tempSafeName)) {
+				resultsBySafeName.put(tempSafeName, tempResult);
+			}
+		}
+	}
+
+	public List<IntegrityTestResult> getResults() {
+		return results;
+	}
+
+	/**
+	 * Returns the result with the given safe name.
+	 *
+	 * @param aSafeName
+	 *            the safe name
+	 * @return the result, or null if there is none
+	 */
+	public IntegrityTestResult get(String aSafeName) {
+		return resultsBySafeName.get(aSafeName);
+	}
+
+	/**
+	 * Estimates the heap usage of the results and the index.
+	 *
+	 * @return the estimated number of bytes
+	 */
+	public long estimateMemoryUsage() {
+		long tempSize = (long) resultsBySafeName.size() * ESTIMATED_ENTRY_SIZE;
+		for (IntegrityTestResult tempResult : results) {
+			tempSize += tempResult.estimateMemoryUsage();
+		}
+		return tempSize;
+	}
+}
@@ -0,0 +1,317 @@
+/*******************************************************************************
+ * Copyright (c) 2026 agent and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package de.gebit.integrity;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The summary information extracted from a single Integrity result file: the name of the test run and the execution
+ * totals found in the outermost suite result element.
+ *
+ * @author agent - initial API and implementation
+ */
+public class IntegrityResultSummary {
+
+	/**
+	 * The name of the test run.
+	 */
+	private String testName;
+
+	/**
+	 * The number of successful tests.
+	 */
+	private int successCount;
+
+	/**
+	 * The number of failed tests.
+	 */
+	private int failureCount;
+
+	/**
+	 * The number of exceptions in tests.
+	 */
+	private int testExceptionCount;
+
+	/**
+	 * The number of exceptions in calls.
+	 */
+	private int callExceptionCount;
+
+	public String getTestName() {
+		return testName;
+	}
+
+	public void setTestName(String aTestName) {
+		testName = aTestName;
+	}
+
+	public int getSuccessCount() {
+		return successCount;
+	}
+
+	public int getFailureCount() {
+		return failureCount;
+	}
+
+	public int getTestExceptionCount() {
+		return testExceptionCount;
+	}
+
+	public int getCallExceptionCount() {
+		return callExceptionCount;
+	}
+
+	/**
+	 * Sets all four execution totals.
+	 *
+	 * @param aSuccessCount
+	 *            the number of successful tests
+	 * @param aFailureCount
+	 *            the number of failed tests
+	 * @param aTestExceptionCount
+	 *            the number of exceptions in tests
+	 * @param aCallExceptionCount
+	 *            the number of exceptions in calls
+	 */
+	public void setCounts(int aSuccessCount, int aFailureCount, int aTestExceptionCount, int aCallExceptionCount) {
+		successCount = aSuccessCount;
+		failureCount = aFailureCount;
+		testExceptionCount = aTestExceptionCount;
+		callExceptionCount = aCallExceptionCount;
+	}
+
+	/**
+	 * Reads the execution totals from the attributes of a suite result tag, given as raw bytes. Missing attributes
+	 * leave the respective total untouched.
+	 *
+	 * @param aBuffer
+	 *            the buffer containing the tag
+	 * @param aStart
+	 *            the position of the opening '&lt;'
+	 * @param anEnd
+	 *            the position after the last byte of the tag
+	 */
+	void readCounts(byte[] aBuffer, int aStart, int anEnd) {
+		successCount = parseCount(getAttributeValue(aBuffer, aStart, anEnd, "successCount"), successCount);
+		failureCount = parseCount(getAttributeValue(aBuffer, aStart, anEnd, "failureCount"), failureCount);
+		testExceptionCount = parseCount(getAttributeValue(aBuffer, aStart, anEnd, "testExceptionCount"),
+				testExceptionCount);
+		callExceptionCount = parseCount(getAttributeValue(aBuffer, aStart, anEnd, "callExceptionCount"),
+				callExceptionCount);
+	}
+
+	private static int parseCount(String aValue, int aDefault) {
+		return aValue != null ? Integer.parseInt(aValue.trim()) : aDefault;
+	}
+
+	/**
+	 * Finds an attribute value inside a tag given as raw bytes. Attribute names are matched case-insensitively, just
+	 * like the StAX-based parser does, and the value is decoded the same way (see
+	 * {@link #decodeAttributeValue(String)}).
+	 *
+	 * @param aBuffer
+	 *            the buffer containing the tag
+	 * @param aStart
+	 *            the position of the opening '&lt;'
+	 * @param anEnd
+	 *            the position after the last byte of the tag
+	 * @param aName
+	 *            the attribute name
+	 * @return the value, or null if the attribute was not found
+	 */
+	static String getAttributeValue(byte[] aBuffer, int aStart, int anEnd, String aName) {
+		int tempValueStart = findAttributeValue(aBuffer, aStart, anEnd, aName);
+		if (tempValueStart < 0) {
+			return null;
+		}
+
+		byte tempQuote = aBuffer[tempValueStart - 1];
+		int tempValueEnd = tempValueStart;
+		while (aBuffer[tempValueEnd] != tempQuote) {
+			tempValueEnd++;
+		}
+		return decodeAttributeValue(
+				new String(aBuffer, tempValueStart, tempValueEnd - tempValueStart, StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Decodes a raw attribute value the way an XML parser does: the predefined entities and character references are
+	 * resolved, and line breaks and tabs are normalized to spaces. Other entity references would need the DTD; they
+	 * are kept as they are.
+	 *
+	 * @param aValue
+	 *            the value as found between the quotes
+	 * @return the decoded value
+	 */
+	static String decodeAttributeValue(String aValue) {
+		StringBuilder tempDecoded = null;
+		for (int i = 0; i < aValue.length(); i++) {
+			char tempChar = aValue.charAt(i);
+			if (tempChar != '&' && tempChar != '\t' && tempChar != '\n' && tempChar != '\r') {
+				if (tempDecoded != null) {
+					tempDecoded.append(tempChar);
+				}
+				continue;
+			}
+
+			if (tempDecoded == null) {
+				tempDecoded = new StringBuilder(aValue.length());
+				tempDecoded.append(aValue, 0, i);
+			}
+			if (tempChar != '&') {
+				// A CR LF pair is a single line break
+				if (tempChar != '\r' || i + 1 >= aValue.length() || aValue.charAt(i + 1) != '\n') {
+					tempDecoded.append(' ');
+				}
+				continue;
+			}
+
+			int tempEnd = aValue.indexOf(';', i);
+			int tempCodePoint = tempEnd > i ? resolveReference(aValue.substring(i + 1, tempEnd)) : -1;
+			if (tempCodePoint < 0) {
+				tempDecoded.append(tempChar);
+			} else {
+				tempDecoded.appendCodePoint(tempCodePoint);
+				i = tempEnd;
+			}
+		}
+		return tempDecoded != null ? tempDecoded.toString() : aValue;
+	}
+
+	/**
+	 * Resolves a predefined entity or a character reference.
+	 *
+	 * @param aName
+	 *            the reference without the leading '&amp;' and the trailing ';'
+	 * @return the referenced code point, or -1 if the reference can't be resolved
+	 */
+	private static int resolveReference(String aName) {
+		switch (aName) {
+		case "amp":
+			return '&';
+		case "lt":
+			return '<';
+		case "gt":
+			return '>';
+		case "quot":
+			return '"';
+		case "apos":
+			return '\'';
+		default:
+			break;
+		}
+		if (aName.length() < 2 || aName.charAt(0) != '#') {
+			return -1;
+		}
+		try {
+			int tempCodePoint;
+			if (aName.charAt(1) == 'x') {
+				tempCodePoint = Integer.parseInt(aName.substring(2), 16);
+			} else {
+				tempCodePoint = Integer.parseInt(aName.substring(1));
+			}
+			return Character.isValidCodePoint(tempCodePoint) ? tempCodePoint : -1;
+		} catch (NumberFormatException exc) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Checks whether a tag given as raw bytes has a certain attribute, without allocating anything.
+	 *
+	 * @param aBuffer
+	 *            the buffer containing the tag
+	 * @param aStart
+	 *            the position of the opening '&lt;'
+	 * @param anEnd
+	 *            the position after the last byte of the tag
+	 * @param aName
+	 *            the attribute name
+	 * @return true if the attribute exists
+	 */
+	static boolean hasAttribute(byte[] aBuffer, int aStart, int anEnd, String aName) {
+		return findAttributeValue(aBuffer, aStart, anEnd, aName) >= 0;
+	}
+
+	/**
+	 * Finds the start of an attribute value inside a tag given as raw bytes. The value is enclosed in quotes; the
+	 * byte before the returned position is the opening quote, and it is guaranteed that the closing quote exists
+	 * before the end of the tag.
+	 *
+	 * @return the position of the first byte of the value, or -1 if the attribute was not found
+	 */
+	private static int findAttributeValue(byte[] aBuffer, int aStart, int anEnd, String aName) {
+		int tempPos = aStart + 1;
+
+		// Skip the element name
+		while (tempPos < anEnd && !isWhitespace(aBuffer[tempPos]) && aBuffer[tempPos] != '>'
+				&& aBuffer[tempPos] != '/') {
+			tempPos++;
+		}
+
+		while (tempPos < anEnd) {
+			while (tempPos < anEnd && isWhitespace(aBuffer[tempPos])) {
+				tempPos++;
+			}
+			int tempNameStart = tempPos;
+			while (tempPos < anEnd && aBuffer[tempPos] != '=' && !isWhitespace(aBuffer[tempPos])
+					&& aBuffer[tempPos] != '>' && aBuffer[tempPos] != '/') {
+				tempPos++;
+			}
+			int tempNameEnd = tempPos;
+			while (tempPos < anEnd && isWhitespace(aBuffer[tempPos])) {
+				tempPos++;
+			}
+			if (tempPos >= anEnd || aBuffer[tempPos] != '=') {
+				if (tempPos < anEnd && tempNameEnd == tempNameStart) {
+					// Something like the closing '/' or '>'
+					tempPos++;
+				}
+				continue;
+			}
+			tempPos++;
+			while (tempPos < anEnd && isWhitespace(aBuffer[tempPos])) {
+				tempPos++;
+			}
+			if (tempPos >= anEnd || (aBuffer[tempPos] != '"' && aBuffer[tempPos] != '\'')) {
+				return -1;
+			}
+			byte tempQuote = aBuffer[tempPos++];
+			int tempValueStart = tempPos;
+			while (tempPos < anEnd && aBuffer[tempPos] != tempQuote) {
+				tempPos++;
+			}
+			if (tempPos >= anEnd) {
+				return -1;
+			}
+
+			if (equalsIgnoreCase(aBuffer, tempNameStart, tempNameEnd, aName)) {
+				return tempValueStart;
+			}
+			tempPos++;
+		}
+
+		return -1;
+	}
+
+	static boolean isWhitespace(byte aByte) {
+		return aByte == ' ' || aByte == '\t' || aByte == '\n' || aByte == '\r';
+	}
+
+	private static boolean equalsIgnoreCase(byte[] aBuffer, int aStart, int anEnd, String aName) {
+		if (anEnd - aStart != aName.length()) {
+			return false;
+		}
+		for (int i = 0; i < aName.length(); i++) {
+			if (Character.toLowerCase((char) aBuffer[aStart + i]) != Character.toLowerCase(aName.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
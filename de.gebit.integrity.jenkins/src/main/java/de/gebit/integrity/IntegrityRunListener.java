@@ -0,0 +1,39 @@
+/*******************************************************************************
+ * Copyright (c) 2026 agent and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package de.gebit.integrity;
+
+import hudson.Extension;
+import hudson.model.Run;
+import hudson.model.listeners.RunListener;
+
+/**
+ * Keeps the per-job data of the plugin up to date when builds finish or are deleted.
+ *
+ * @author agent - initial API and implementation
+ */
+@Extension
+public class IntegrityRunListener extends RunListener<Run<?, ?>> {
+
+	@Override
+	public void onFinalized(Run<?, ?> aRun) {
+		IntegrityProjectAction.buildUpdated(aRun);
+		if (aRun.getAction(IntegrityTestResultAction.class) != null) {
+			IntegrityTrendIndex.add(aRun);
+		}
+	}
+
+	@Override
+	public void onDeleted(Run<?, ?> aRun) {
+		IntegrityProjectAction.buildDeleted(aRun);
+		if (aRun.getAction(IntegrityTestResultAction.class) != null) {
+			IntegrityTrendIndex.remove(aRun);
+			IntegrityResultCache.getInstance().remove(aRun.getRootDir());
+			IntegrityCompoundTestResult.releaseStoredData(aRun);
+		}
+	}
+}
@@ -0,0 +1,336 @@
+/*******************************************************************************
+ * Copyright (c) 2026 agent and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package de.gebit.integrity;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A stream which cuts the embedded XSLT stylesheet out of the Integrity result data written to it. All other bytes are
+ * passed on to the target stream unchanged, while the first stylesheet element (from the '&lt;' of its start tag to
+ * the '&gt;' of its end tag) is handed to the target separately, at its position in the data (see
+ * {@link IntegrityRawDataWriter#writeStylesheet(byte[])}). Since every Integrity report embeds the very same
+ * stylesheet, it can then be stored once and spliced back in when the report is read.
+ * <p>
+ * The split is purely byte-based: whatever is cut out is put back at exactly the same position, so a misdetected
+ * stylesheet (for example inside a comment) costs nothing but the split being less useful. If no complete stylesheet
+ * is found, or it is implausibly small or large, nothing is cut out.
+ *
+ * @author agent - initial API and implementation
+ */
+public class IntegrityStylesheetSplitter extends OutputStream {
+
+	/**
+	 * The local name of the stylesheet element.
+	 */
+	private static final byte[] STYLESHEET = "stylesheet".getBytes(StandardCharsets.US_ASCII);
+
+	/**
+	 * The maximum length of a tag name that is inspected.
+	 */
+	private static final int MAX_NAME_LENGTH = 64;
+
+	/**
+	 * Stylesheets smaller than this are not worth to be split out.
+	 */
+	private static final int MIN_STYLESHEET_SIZE = 1024;
+
+	/**
+	 * Stylesheets larger than this are kept in the data, in order to bound the memory used.
+	 */
+	private static final int MAX_STYLESHEET_SIZE = 8 * 1024 * 1024;
+
+	/**
+	 * State: searching for the start tag of the stylesheet.
+	 */
+	private static final int STATE_SEARCH = 0;
+
+	/**
+	 * State: reading a tag name after a '&lt;'.
+	 */
+	private static final int STATE_TAG_NAME = 1;
+
+	/**
+	 * State: inside the start tag of the stylesheet.
+	 */
+	private static final int STATE_START_TAG = 2;
+
+	/**
+	 * State: inside the stylesheet content.
+	 */
+	private static final int STATE_CONTENT = 3;
+
+	/**
+	 * State: inside the end tag of the stylesheet, after its name.
+	 */
+	private static final int STATE_END_TAG = 4;
+
+	/**
+	 * State: done, everything is passed on unchanged.
+	 */
+	private static final int STATE_DONE = 5;
+
+	/**
+	 * The stream receiving the data and, separately, the stylesheet.
+	 */
+	private final IntegrityRawDataWriter target;
+
+	/**
+	 * The current state.
+	 */
+	private int state = STATE_SEARCH;
+
+	/**
+	 * The bytes of the tag currently being inspected, starting with the '&lt;'.
+	 */
+	private final byte[] pendingTag = new byte[MAX_NAME_LENGTH + 2];
+
+	/**
+	 * The number of bytes in {@link #pendingTag}.
+	 */
+	private int pendingTagLength;
+
+	/**
+	 * The stylesheet, while it is being collected.
+	 */
+	private ByteArrayOutputStream collectedStylesheet;
+
+	/**
+	 * The bytes starting the end tag of the stylesheet: "&lt;/" and the qualified name of the start tag.
+	 */
+	private byte[] endTagStart;
+
+	/**
+	 * The number of bytes of {@link #endTagStart} matched by the last bytes of the stylesheet content.
+	 */
+	private int endTagMatchLength;
+
+	/**
+	 * The quote character of the attribute value currently read in the start tag, or 0 if outside of quotes.
+	 */
+	private byte quote;
+
+	/**
+	 * The last byte of the start tag read so far.
+	 */
+	private byte previousByte;
+
+	/**
+	 * Creates an instance.
+	 *
+	 * @param aTarget
+	 *            the stream receiving the data and, separately, the stylesheet
+	 */
+	public IntegrityStylesheetSplitter(IntegrityRawDataWriter aTarget) {
+		target = aTarget;
+	}
+
+	@Override
+	public void write(int aByte) throws IOException {
+		write(new byte[] { (byte) aByte }, 0, 1);
+	}
+
+	@Override
+	public void write(byte[] aBuffer, int anOffset, int aLength) throws IOException {
+		int tempEnd = anOffset + aLength;
+		int i = anOffset;
+		while (i < tempEnd) {
+			if (state == STATE_DONE) {
+				pass(aBuffer, i, tempEnd - i);
+				return;
+			} else if (state == STATE_SEARCH) {
+				// Pass on everything up to the next tag in one go
+				int tempTagStart = i;
+				while (tempTagStart < tempEnd && aBuffer[tempTagStart] != '<') {
+					tempTagStart++;
+				}
+				pass(aBuffer, i, tempTagStart - i);
+				if (tempTagStart < tempEnd) {
+					pendingTag[0] = '<';
+					pendingTagLength = 1;
+					state = STATE_TAG_NAME;
+				}
+				i = tempTagStart + 1;
+			} else {
+				handleByte(aBuffer[i]);
+				i++;
+			}
+		}
+	}
+
+	private void handleByte(byte aByte) throws IOException {
+		switch (state) {
+		case STATE_TAG_NAME:
+			if (aByte == '<') {
+				// Not a tag after all, but maybe the next one is
+				flushPendingTag();
+				pendingTag[0] = '<';
+				pendingTagLength = 1;
+			} else if (aByte == '>' || aByte == '/' && pendingTagLength > 1 || isWhitespace(aByte)) {
+				if (isStylesheetTag()) {
+					startCollecting(aByte);
+				} else {
+					flushPendingTag();
+					pass(new byte[] { aByte }, 0, 1);
+					state = STATE_SEARCH;
+				}
+			} else if (pendingTagLength == pendingTag.length) {
+				// Too long for the name we're looking for
+				flushPendingTag();
+				pass(new byte[] { aByte }, 0, 1);
+				state = STATE_SEARCH;
+			} else {
+				pendingTag[pendingTagLength++] = aByte;
+			}
+			break;
+		case STATE_START_TAG:
+			if (!collect(aByte)) {
+				break;
+			}
+			if (quote != 0) {
+				if (aByte == quote) {
+					quote = 0;
+				}
+			} else if (aByte == '"' || aByte == '\'') {
+				quote = aByte;
+			} else if (aByte == '>') {
+				if (previousByte == '/') {
+					finishCollecting();
+				} else {
+					state = STATE_CONTENT;
+				}
+			}
+			previousByte = aByte;
+			break;
+		case STATE_CONTENT:
+			if (!collect(aByte)) {
+				break;
+			}
+			// The '<' only occurs at the start of the end tag, so a mismatch can only restart at a '<'
+			if (aByte == endTagStart[endTagMatchLength]) {
+				endTagMatchLength++;
+			} else {
+				endTagMatchLength = (aByte == '<') ? 1 : 0;
+			}
+			if (endTagMatchLength == endTagStart.length) {
+				endTagMatchLength = 0;
+				state = STATE_END_TAG;
+			}
+			break;
+		case STATE_END_TAG:
+			if (!collect(aByte)) {
+				break;
+			}
+			if (aByte == '>') {
+				finishCollecting();
+			} else if (!isWhitespace(aByte)) {
+				// Just an element with a longer name
+				state = STATE_CONTENT;
+			}
+			break;
+		default:
+			throw new IllegalStateException("Unknown splitter state " + state);
+		}
+	}
+
+	private boolean isStylesheetTag() {
+		int tempLocalNameStart = 1;
+		for (int i = 1; i < pendingTagLength; i++) {
+			if (pendingTag[i] == ':') {
+				tempLocalNameStart = i + 1;
+			}
+		}
+		if (pendingTagLength - tempLocalNameStart != STYLESHEET.length
+				|| pendingTag[1] == '/' || pendingTag[1] == '!' || pendingTag[1] == '?') {
+			return false;
+		}
+		for (int i = 0; i < STYLESHEET.length; i++) {
+			if (pendingTag[tempLocalNameStart + i] != STYLESHEET[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void startCollecting(byte aTerminator) throws IOException {
+		endTagStart = new byte[pendingTagLength + 1];
+		endTagStart[0] = '<';
+		endTagStart[1] = '/';
+		System.arraycopy(pendingTag, 1, endTagStart, 2, pendingTagLength - 1);
+
+		collectedStylesheet = new ByteArrayOutputStream();
+		collectedStylesheet.write(pendingTag, 0, pendingTagLength);
+		pendingTagLength = 0;
+		endTagMatchLength = 0;
+		quote = 0;
+		previousByte = 0;
+		state = STATE_START_TAG;
+		handleByte(aTerminator);
+	}
+
+	private boolean collect(byte aByte) throws IOException {
+		collectedStylesheet.write(aByte);
+		if (collectedStylesheet.size() > MAX_STYLESHEET_SIZE) {
+			abortCollecting();
+			return false;
+		}
+		return true;
+	}
+
+	private void finishCollecting() throws IOException {
+		if (collectedStylesheet.size() < MIN_STYLESHEET_SIZE) {
+			abortCollecting();
+			return;
+		}
+		byte[] tempStylesheet = collectedStylesheet.toByteArray();
+		collectedStylesheet = null;
+		state = STATE_DONE;
+		target.writeStylesheet(tempStylesheet);
+	}
+
+	private void abortCollecting() throws IOException {
+		ByteArrayOutputStream tempCollected = collectedStylesheet;
+		collectedStylesheet = null;
+		state = STATE_DONE;
+		pass(tempCollected.toByteArray(), 0, tempCollected.size());
+	}
+
+	private void flushPendingTag() throws IOException {
+		pass(pendingTag, 0, pendingTagLength);
+		pendingTagLength = 0;
+	}
+
+	private void pass(byte[] aBuffer, int anOffset, int aLength) throws IOException {
+		if (aLength > 0) {
+			target.write(aBuffer, anOffset, aLength);
+		}
+	}
+
+	private static boolean isWhitespace(byte aByte) {
+		return aByte == ' ' || aByte == '\t' || aByte == '\r' || aByte == '\n';
+	}
+
+	@Override
+	public void flush() throws IOException {
+		target.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (state == STATE_TAG_NAME) {
+			flushPendingTag();
+		} else if (collectedStylesheet != null) {
+			// The stylesheet never ended
+			abortCollecting();
+		}
+		state = STATE_DONE;
+		target.close();
+	}
+}
@@ -0,0 +1,216 @@
+/*******************************************************************************
+ * Copyright (c) 2026 agent and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package de.gebit.integrity;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Locates the summary of an Integrity result file by looking at its end only. The execution totals are stored in the
+ * result element of the outermost suite, which is written after all nested suites and thus sits right before the end
+ * of the XML data. Reading a few kilobytes from the end of the file via positional reads is therefore usually enough to
+ * find them, no matter how large the file is.
+ * <p>
+ * The scan is a heuristic: if the expected structure cannot be found within {@link #MAX_WINDOW_SIZE} bytes from the
+ * end of the file, {@link #scan(File)} returns null and callers are expected to fall back to a full forward parse.
+ *
+ * @author agent - initial API and implementation
+ */
+public final class IntegrityTailScanner {
+
+	/**
+	 * The number of bytes read from the end of the file in the first attempt.
+	 */
+	private static final int INITIAL_WINDOW_SIZE = 64 * 1024;
+
+	/**
+	 * The maximum number of bytes read from the end of the file before giving up.
+	 */
+	private static final int MAX_WINDOW_SIZE = 4 * 1024 * 1024;
+
+	/**
+	 * The end tag of the XML data.
+	 */
+	private static final byte[] INTEGRITY_END_TAG = "</integrity>".getBytes(StandardCharsets.US_ASCII);
+
+	/**
+	 * The end tag of suites.
+	 */
+	private static final byte[] SUITE_END_TAG = "</suite>".getBytes(StandardCharsets.US_ASCII);
+
+	/**
+	 * The start of suite start tags.
+	 */
+	private static final byte[] SUITE_START_TAG = "<suite".getBytes(StandardCharsets.US_ASCII);
+
+	/**
+	 * The start of result start tags.
+	 */
+	private static final byte[] RESULT_START_TAG = "<result".getBytes(StandardCharsets.US_ASCII);
+
+	private IntegrityTailScanner() {
+		// static methods only
+	}
+
+	/**
+	 * Tries to find the execution totals by reading from the end of the given file. The test name is not part of the
+	 * returned summary; it can be obtained via {@link IntegrityByteScanner#readTestName(InputStream)}.
+	 *
+	 * @param aFile
+	 *            the result file
+	 * @return the summary, or null if the totals could not be located near the end of the file
+	 * @throws IOException
+	 */
+	public static IntegrityResultSummary scan(File aFile) throws IOException {
+		try (FileChannel tempChannel = FileChannel.open(aFile.toPath(), StandardOpenOption.READ)) {
+			long tempSize = tempChannel.size();
+			int tempWindowSize = INITIAL_WINDOW_SIZE;
+			while (true) {
+				int tempLength = (int) Math.min(tempWindowSize, tempSize);
+				byte[] tempWindow = new byte[tempLength];
+				readFully(tempChannel, tempWindow, tempSize - tempLength);
+
+				boolean tempComplete = (tempLength == tempSize);
+				IntegrityResultSummary tempSummary = new IntegrityResultSummary();
+				Boolean tempFound = scanWindow(tempWindow, tempSummary);
+				if (tempFound == null) {
+					// Not decidable within the window, so try a larger one (if possible)
+					if (tempComplete || tempWindowSize >= MAX_WINDOW_SIZE) {
+						return null;
+					}
+					tempWindowSize = Math.min(tempWindowSize * 4, MAX_WINDOW_SIZE);
+				} else {
+					return tempFound ? tempSummary : null;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Scans a window from the end of the file for the outermost suite result.
+	 *
+	 * @param aWindow
+	 *            the window
+	 * @param aSummary
+	 *            the summary to fill
+	 * @return true if the summary was found, false if the file does not have the expected structure, null if the
+	 *         window was too small to decide
+	 */
+	private static Boolean scanWindow(byte[] aWindow, IntegrityResultSummary aSummary) {
+		int tempIntegrityEnd = lastIndexOf(aWindow, INTEGRITY_END_TAG, aWindow.length);
+		if (tempIntegrityEnd < 0) {
+			return null;
+		}
+		int tempSuiteEnd = lastIndexOf(aWindow, SUITE_END_TAG, tempIntegrityEnd);
+		if (tempSuiteEnd < 0) {
+			return null;
+		}
+
+		// Walk backwards from the end of the outermost suite. The first result element without a "type" attribute
+		// (those are call results) that is not enclosed in a nested suite is the summary.
+		int tempPosition = tempSuiteEnd;
+		while (true) {
+			int tempResultStart = lastIndexOfTag(aWindow, RESULT_START_TAG, tempPosition);
+			int tempBoundary = Math.max(lastIndexOf(aWindow, SUITE_END_TAG, tempPosition),
+					lastIndexOfTag(aWindow, SUITE_START_TAG, tempPosition));
+			if (tempResultStart < 0 || tempResultStart < tempBoundary) {
+				// Either nothing was found in the window, or we would leave the outermost suite or enter a nested
+				// one before finding the summary
+				return (tempBoundary < 0) ? null : Boolean.FALSE;
+			}
+
+			int tempResultEnd = findTagEnd(aWindow, tempResultStart, tempSuiteEnd);
+			if (tempResultEnd < 0) {
+				return Boolean.FALSE;
+			}
+			if (!IntegrityResultSummary.hasAttribute(aWindow, tempResultStart, tempResultEnd, "type")) {
+				try {
+					aSummary.readCounts(aWindow, tempResultStart, tempResultEnd);
+				} catch (NumberFormatException exc) {
+					return Boolean.FALSE;
+				}
+				return Boolean.TRUE;
+			}
+
+			tempPosition = tempResultStart;
+		}
+	}
+
+	private static void readFully(FileChannel aChannel, byte[] aTarget, long aPosition) throws IOException {
+		ByteBuffer tempBuffer = ByteBuffer.wrap(aTarget);
+		while (tempBuffer.hasRemaining()) {
+			if (aChannel.read(tempBuffer, aPosition + tempBuffer.position()) < 0) {
+				throw new EOFException();
+			}
+		}
+	}
+
+	/**
+	 * Finds the end of the tag starting at the given position, honoring quoted attribute values.
+	 *
+	 * @return the position after the closing '&gt;', or -1 if the tag does not end before the limit
+	 */
+	private static int findTagEnd(byte[] aBuffer, int aStart, int aLimit) {
+		byte tempQuote = 0;
+		for (int i = aStart + 1; i < aLimit; i++) {
+			if (tempQuote != 0) {
+				if (aBuffer[i] == tempQuote) {
+					tempQuote = 0;
+				}
+			} else if (aBuffer[i] == '"' || aBuffer[i] == '\'') {
+				tempQuote = aBuffer[i];
+			} else if (aBuffer[i] == '>') {
+				return i + 1;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Like {@link #lastIndexOf(byte[], byte[], int)}, but only matches if the pattern is followed by a character that
+	 * terminates an element name, so "&lt;suite" does not match "&lt;suites".
+	 */
+	private static int lastIndexOfTag(byte[] aBuffer, byte[] aTagStart, int aBefore) {
+		int tempPosition = aBefore;
+		while (true) {
+			tempPosition = lastIndexOf(aBuffer, aTagStart, tempPosition);
+			if (tempPosition < 0) {
+				return -1;
+			}
+			int tempNext = tempPosition + aTagStart.length;
+			if (tempNext < aBuffer.length && (IntegrityResultSummary.isWhitespace(aBuffer[tempNext])
+					|| aBuffer[tempNext] == '>' || aBuffer[tempNext] == '/')) {
+				return tempPosition;
+			}
+		}
+	}
+
+	/**
+	 * Finds the last occurrence of a pattern that starts before the given position.
+	 *
+	 * @return the start of the occurrence, or -1 if none was found
+	 */
+	private static int lastIndexOf(byte[] aBuffer, byte[] aPattern, int aBefore) {
+		for (int i = Math.min(aBefore - 1, aBuffer.length - aPattern.length); i >= 0; i--) {
+			int j = 0;
+			while (j < aPattern.length && aBuffer[i + j] == aPattern[j]) {
+				j++;
+			}
+			if (j == aPattern.length) {
+				return i;
+			}
+		}
+		return -1;
+	}
+}
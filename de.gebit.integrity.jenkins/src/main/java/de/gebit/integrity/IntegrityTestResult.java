@@ -7,14 +7,28 @@
  *******************************************************************************/
 package de.gebit.integrity;
 
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
 import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
 
 import hudson.model.Run;
 import hudson.tasks.test.AbstractTestResultAction;
@@ -37,9 +51,45 @@ public class IntegrityTestResult extends TabulatedResult {
 	private static final long serialVersionUID = 6444750573793802895L;
 
 	/**
-	 * The parent (should be an instance of {@link IntegrityCompoundTestResult}).
+	 * The magic bytes at the start of the raw data.
+	 */
+	private static final byte[] RAW_DATA_MAGIC = { 'I', 'R', 'D' };
+
+	/**
+	 * The size of the uncompressed length field.
+	 */
+	private static final int RAW_DATA_LENGTH_SIZE = 4;
+
+	/**
+	 * The size of the raw data header: magic bytes, codec identifier and uncompressed length.
+	 */
+	private static final int RAW_DATA_HEADER_SIZE = RAW_DATA_MAGIC.length + 1 + RAW_DATA_LENGTH_SIZE;
+
+	/**
+	 * The first byte of a GZIP stream. Raw data starting with the GZIP magic bytes is in the legacy format.
+	 */
+	private static final int GZIP_MAGIC_FIRST_BYTE = 0x1f;
+
+	/**
+	 * The second byte of a GZIP stream.
+	 */
+	private static final int GZIP_MAGIC_SECOND_BYTE = 0x8b;
+
+	/**
+	 * The size of the buffer used when serving decompressed raw data.
+	 */
+	private static final int SERVE_BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * The estimated heap usage of an instance without its strings and raw data.
+	 */
+	private static final int ESTIMATED_INSTANCE_SIZE = 256;
+
+	/**
+	 * The parent (should be an instance of {@link IntegrityCompoundTestResult}). Volatile, since cached results are
+	 * shared between request threads, which may link them to a reloaded parent.
 	 */
-	private transient TestObject parent;
+	private transient volatile TestObject parent;
 
 	/**
 	 * The action owning this result.
@@ -62,10 +112,37 @@ public class IntegrityTestResult extends TabulatedResult {
 	private String contentType;
 
 	/**
-	 * The raw test report XML data. Stored GZIP-compressed to save on hard disk space while persisted. Decompression
-	 * and compression happen on-the-fly in the getter/setter.
+	 * The raw test report XML data. Stored compressed to save on hard disk space while persisted. Decompression and
+	 * compression happen on-the-fly in the getter/setter. The compressed data is preceded by a small header naming the
+	 * codec (see {@link IntegrityRawDataWriter}), except for data persisted by older versions, which is a GZIP stream
+	 * of the uncompressed length followed by the data. Volatile, since it is dropped while reports may be served.
 	 */
-	private byte[] rawData;
+	private volatile byte[] rawData;
+
+	/**
+	 * Where the raw data is stored, once it was moved out of memory. This is set before {@link #rawData} is dropped, so
+	 * readers finding no data in memory find it here.
+	 */
+	private transient volatile RawDataLocation rawDataLocation;
+
+	/**
+	 * The XSLT stylesheet split out of the raw data (see {@link IntegrityStylesheetSplitter}), compressed with the
+	 * codec of the raw data as a stream of its own, as long as it is kept in memory. Results parsed together share one
+	 * array, so it is transferred from the agent only once.
+	 */
+	private volatile byte[] stylesheet;
+
+	/**
+	 * The file the split-out stylesheet is stored in, once it was moved out of memory (a blob of the
+	 * {@link IntegrityBlobStore}). This is set before {@link #stylesheet} is dropped.
+	 */
+	private transient volatile File stylesheetFile;
+
+	/**
+	 * The position in the stored raw data at which the compressed stylesheet has to be spliced back in. The stored data
+	 * ends one compressed stream there and starts another one.
+	 */
+	private long stylesheetOffset;
 
 	/**
 	 * The number of successful tests.
@@ -97,7 +174,8 @@ public class IntegrityTestResult extends TabulatedResult {
 	 * @param aDisplayName
 	 *            the displayed name
 	 * @param someRawData
-	 *            the raw XML data
+	 *            the raw XML data (may be null if the compressed data is provided via
+	 *            {@link #setCompressedRawData(byte[])} instead)
 	 * @param aSuccessCount
 	 *            the number of successful tests
 	 * @param aFailureCount
@@ -115,7 +193,9 @@ public class IntegrityTestResult extends TabulatedResult {
 		this.parent = aParent;
 		this.name = aName;
 		this.displayName = aDisplayName;
-		setRawData(someRawData);
+		if (someRawData != null) {
+			setRawData(someRawData);
+		}
 		this.successCount = aSuccessCount;
 		this.failureCount = aFailureCount;
 		this.testExceptionCount = aTestExceptionCount;
@@ -141,7 +221,11 @@ public class IntegrityTestResult extends TabulatedResult {
 
 	@Override
 	public Run<?, ?> getRun() {
-		return (parentAction == null ? null : parentAction.run);
+		if (parentAction != null) {
+			return parentAction.run;
+		}
+		// Children usually only know their parent
+		return (parent == null ? null : parent.getRun());
 	}
 
 	@SuppressWarnings("rawtypes")
@@ -173,18 +257,11 @@ public class IntegrityTestResult extends TabulatedResult {
 	 * @return the raw uncompressed XML data
 	 */
 	public byte[] getRawData() {
-		GZIPInputStream tempGzipStream = null;
+		InputStream tempStream = null;
 		try {
-			ByteArrayInputStream tempInputStream = new ByteArrayInputStream(rawData);
-			tempGzipStream = new GZIPInputStream(tempInputStream);
-
-			byte[] tempSizeBytes = new byte[4];
-			int tempBytesRead = tempGzipStream.read(tempSizeBytes);
-			if (tempBytesRead == -1) {
-				throw new RuntimeException("No data");
-			}
+			tempStream = openRawData();
 
-			int tempSize = ByteBuffer.wrap(tempSizeBytes).getInt();
+			int tempSize = getUncompressedRawDataLength();
 			if (tempSize > 1024 * 1024 * 1024) {
 				// Protect against absurdly high sizes and thus the risk of OutOfMemoryExceptions
 				throw new RuntimeException("Apparently illegal uncompressed size: " + tempSize);
@@ -194,7 +271,7 @@ public class IntegrityTestResult extends TabulatedResult {
 			int tempTotalRead = 0;
 			do {
 				tempTotalRead += tempRead;
-				tempRead = tempGzipStream.read(tempUncompressedRawData, tempTotalRead,
+				tempRead = tempStream.read(tempUncompressedRawData, tempTotalRead,
 						tempUncompressedRawData.length - tempTotalRead);
 			} while (tempRead >= 0 && tempTotalRead < tempUncompressedRawData.length);
 
@@ -203,9 +280,9 @@ public class IntegrityTestResult extends TabulatedResult {
 			// pretty much impossible to happen, but nevertheless...
 			exc.printStackTrace();
 		} finally {
-			if (tempGzipStream != null) {
+			if (tempStream != null) {
 				try {
-					tempGzipStream.close();
+					tempStream.close();
 				} catch (IOException exc) {
 					// now this is REALLY impossible to happen, and even if, well, who cares anyway...
 				}
@@ -216,28 +293,403 @@ public class IntegrityTestResult extends TabulatedResult {
 	}
 
 	/**
-	 * Sets the raw data and compresses it on the fly.
+	 * Opens a stream which decompresses the raw XML test data while it is being read, so the uncompressed data never
+	 * has to be held in memory as a whole.
+	 * 
+	 * @return the stream of raw uncompressed XML data
+	 * @throws IOException
+	 */
+	public InputStream openRawData() throws IOException {
+		InputStream tempStream = new BufferedInputStream(openStoredRawData());
+		try {
+			tempStream.mark(RAW_DATA_HEADER_SIZE);
+			byte[] tempHeader = new byte[RAW_DATA_HEADER_SIZE];
+			int tempHeaderLength = IOUtils.read(tempStream, tempHeader);
+			if (isLegacyRawData(tempHeader, tempHeaderLength)) {
+				tempStream.reset();
+				GZIPInputStream tempGzipStream = new GZIPInputStream(tempStream);
+				// Skip the uncompressed length prefix
+				if (IOUtils.skip(tempGzipStream, RAW_DATA_LENGTH_SIZE) < RAW_DATA_LENGTH_SIZE) {
+					throw new IOException("No data");
+				}
+				return tempGzipStream;
+			}
+
+			IntegrityRawDataCodec tempCodec = checkRawDataHeader(tempHeader, tempHeaderLength);
+			if (!hasStylesheet()) {
+				return tempCodec.createDecompressor(tempStream);
+			}
+
+			// The data before and after the stylesheet are separate compressed streams, and so is the stylesheet
+			List<InputStream> tempParts = new ArrayList<InputStream>(3);
+			try {
+				tempParts.add(tempCodec.createDecompressor(
+						new BoundedInputStream(tempStream, stylesheetOffset - RAW_DATA_HEADER_SIZE)));
+				tempParts.add(tempCodec.createDecompressor(new BufferedInputStream(openStylesheet())));
+				InputStream tempTailStream = new BufferedInputStream(openStoredRawData());
+				tempParts.add(tempTailStream);
+				IOUtils.skipFully(tempTailStream, stylesheetOffset);
+				tempParts.set(2, tempCodec.createDecompressor(tempTailStream));
+			} catch (IOException exc) {
+				for (InputStream tempPart : tempParts) {
+					tempPart.close();
+				}
+				throw exc;
+			}
+			return new SequenceInputStream(Collections.enumeration(tempParts));
+		} catch (IOException exc) {
+			tempStream.close();
+			throw exc;
+		}
+	}
+
+	/**
+	 * Returns the length of the raw XML test data in uncompressed form. This includes the split-out stylesheet, if
+	 * there is one.
+	 * 
+	 * @return the uncompressed length
+	 * @throws IOException
+	 */
+	public int getUncompressedRawDataLength() throws IOException {
+		byte[] tempHeader = new byte[RAW_DATA_HEADER_SIZE];
+		int tempHeaderLength;
+		try (InputStream tempStream = openStoredRawData()) {
+			tempHeaderLength = IOUtils.read(tempStream, tempHeader);
+		}
+
+		if (isLegacyRawData(tempHeader, tempHeaderLength)) {
+			try (GZIPInputStream tempGzipStream = new GZIPInputStream(openStoredRawData())) {
+				byte[] tempSizeBytes = new byte[RAW_DATA_LENGTH_SIZE];
+				IOUtils.readFully(tempGzipStream, tempSizeBytes);
+				return ByteBuffer.wrap(tempSizeBytes).getInt();
+			}
+		}
+
+		checkRawDataHeader(tempHeader, tempHeaderLength);
+		return ByteBuffer.wrap(tempHeader, RAW_DATA_MAGIC.length + 1, RAW_DATA_LENGTH_SIZE).getInt();
+	}
+
+	/**
+	 * Checks whether raw data is available for this result.
+	 * 
+	 * @return true if raw data is available
+	 */
+	public boolean hasRawData() {
+		return rawData != null || rawDataLocation != null;
+	}
+
+	/**
+	 * Opens the raw data the way it is stored, either in memory or in its blob file.
+	 */
+	InputStream openStoredRawData() throws IOException {
+		byte[] tempRawData = rawData;
+		if (tempRawData != null) {
+			return new ByteArrayInputStream(tempRawData);
+		}
+		RawDataLocation tempLocation = rawDataLocation;
+		if (tempLocation != null) {
+			return IntegrityResultContainer.open(tempLocation.file, tempLocation.offset, tempLocation.length);
+		}
+		throw new IOException("No data");
+	}
+
+	/**
+	 * Returns the number of bytes of the raw data the way it is stored.
+	 */
+	long getStoredRawDataLength() throws IOException {
+		byte[] tempRawData = rawData;
+		if (tempRawData != null) {
+			return tempRawData.length;
+		}
+		RawDataLocation tempLocation = rawDataLocation;
+		if (tempLocation != null) {
+			return tempLocation.length;
+		}
+		throw new IOException("No data");
+	}
+
+	/**
+	 * Checks whether a stylesheet was split out of the raw data.
+	 */
+	boolean hasStylesheet() {
+		return stylesheet != null || stylesheetFile != null;
+	}
+
+	/**
+	 * Returns the compressed split-out stylesheet if it is kept in memory.
+	 */
+	byte[] getStylesheet() {
+		return stylesheet;
+	}
+
+	/**
+	 * Returns the position in the stored raw data at which the compressed split-out stylesheet belongs.
+	 */
+	long getStylesheetOffset() {
+		return stylesheetOffset;
+	}
+
+	/**
+	 * Opens the compressed split-out stylesheet, either in memory or in its file.
+	 */
+	InputStream openStylesheet() throws IOException {
+		byte[] tempStylesheet = stylesheet;
+		if (tempStylesheet != null) {
+			return new ByteArrayInputStream(tempStylesheet);
+		}
+		File tempStylesheetFile = stylesheetFile;
+		if (tempStylesheetFile != null) {
+			return IntegrityResultContainer.open(tempStylesheetFile, 0, tempStylesheetFile.length());
+		}
+		throw new IOException("No stylesheet");
+	}
+
+	/**
+	 * Returns the number of bytes of the compressed split-out stylesheet.
+	 */
+	long getStoredStylesheetLength() throws IOException {
+		byte[] tempStylesheet = stylesheet;
+		if (tempStylesheet != null) {
+			return tempStylesheet.length;
+		}
+		File tempStylesheetFile = stylesheetFile;
+		if (tempStylesheetFile != null) {
+			return tempStylesheetFile.length();
+		}
+		throw new IOException("No stylesheet");
+	}
+
+	/**
+	 * Sets the stylesheet split out of the raw data.
+	 * 
+	 * @param anOffset
+	 *            the position in the stored raw data at which the compressed stylesheet belongs
+	 * @param someStylesheet
+	 *            the compressed stylesheet, or null if none was split out
+	 */
+	void setStylesheet(long anOffset, byte[] someStylesheet) {
+		stylesheetOffset = anOffset;
+		stylesheetFile = null;
+		stylesheet = someStylesheet;
+	}
+
+	/**
+	 * Tells this result where its split-out stylesheet is stored on disk. The stylesheet is no longer kept in memory
+	 * afterwards.
+	 * 
+	 * @param aFile
+	 *            the file containing nothing but the stylesheet
+	 * @param anOffset
+	 *            the position in the stored raw data at which the compressed stylesheet belongs
+	 */
+	void setStoredStylesheet(File aFile, long anOffset) {
+		stylesheetOffset = anOffset;
+		stylesheetFile = aFile;
+		stylesheet = null;
+	}
+
+	/**
+	 * Checks whether the raw data is stored in the format written by plugin versions before this change: a GZIP stream
+	 * of the uncompressed length followed by the data. Such data cannot be served to clients as-is.
+	 * 
+	 * @param aHeader
+	 *            the first bytes of the raw data
+	 * @param aHeaderLength
+	 *            the number of valid bytes in the header array
+	 * @return true if the raw data is stored in the legacy format
+	 */
+	private static boolean isLegacyRawData(byte[] aHeader, int aHeaderLength) {
+		return aHeaderLength >= 2 && (aHeader[0] & 0xFF) == GZIP_MAGIC_FIRST_BYTE
+				&& (aHeader[1] & 0xFF) == GZIP_MAGIC_SECOND_BYTE;
+	}
+
+	private static IntegrityRawDataCodec checkRawDataHeader(byte[] aHeader, int aHeaderLength) throws IOException {
+		if (aHeaderLength < RAW_DATA_HEADER_SIZE) {
+			throw new IOException("Raw data is truncated");
+		}
+		for (int i = 0; i < RAW_DATA_MAGIC.length; i++) {
+			if (aHeader[i] != RAW_DATA_MAGIC[i]) {
+				throw new IOException("Raw data is in an unknown format");
+			}
+		}
+		IntegrityRawDataCodec tempCodec = IntegrityRawDataCodec.forId(aHeader[RAW_DATA_MAGIC.length]);
+		if (tempCodec == null) {
+			throw new IOException("Raw data is compressed with unknown codec " + aHeader[RAW_DATA_MAGIC.length]);
+		}
+		return tempCodec;
+	}
+
+	/**
+	 * Sets the raw data and compresses it on the fly with the default codec. The embedded stylesheet is split out.
 	 * 
 	 * @param someData
 	 *            the uncompressed raw XML data
 	 */
 	protected void setRawData(byte[] someData) {
+		setRawData(someData, IntegrityRawDataCodec.getDefault());
+	}
+
+	/**
+	 * Sets the raw data and compresses it on the fly. The embedded stylesheet is split out.
+	 * 
+	 * @param someData
+	 *            the uncompressed raw XML data
+	 * @param aCodec
+	 *            the codec to compress the data with
+	 */
+	protected void setRawData(byte[] someData, IntegrityRawDataCodec aCodec) {
 		try {
 			ByteArrayOutputStream tempOutputStream = new ByteArrayOutputStream();
-			GZIPOutputStream tempGzipStream = new GZIPOutputStream(tempOutputStream);
-
-			// Prefix the compressed data with the uncompressed data length, in order to optimize decompression
-			tempGzipStream.write(ByteBuffer.allocate(4).putInt(someData.length).array());
-			tempGzipStream.write(someData);
-			tempGzipStream.close();
+			IntegrityRawDataWriter tempWriter = new IntegrityRawDataWriter(tempOutputStream, someData.length, aCodec);
+			IntegrityStylesheetSplitter tempSplitter = new IntegrityStylesheetSplitter(tempWriter);
+			tempSplitter.write(someData);
+			tempSplitter.close();
 
 			rawData = tempOutputStream.toByteArray();
+			setStylesheet(tempWriter.getStylesheetOffset(), tempWriter.getCompressedStylesheet());
 		} catch (IOException exc) {
 			// pretty much impossible to happen
 			exc.printStackTrace();
 		}
 	}
 
+	/**
+	 * Sets the raw data in already compressed form, as produced by an {@link IntegrityRawDataWriter}.
+	 * 
+	 * @param someCompressedData
+	 *            the compressed raw data
+	 */
+	void setCompressedRawData(byte[] someCompressedData) {
+		rawData = someCompressedData;
+	}
+
+	/**
+	 * Tells this result where its raw data is stored on disk. The raw data is no longer kept in memory
+	 * afterwards, but read from the file whenever it is needed.
+	 * 
+	 * @param aFile
+	 *            the blob file
+	 * @param anOffset
+	 *            the position of the raw data in the file
+	 * @param aLength
+	 *            the number of bytes of raw data
+	 */
+	void setStoredRawData(File aFile, long anOffset, long aLength) {
+		rawDataLocation = new RawDataLocation(aFile, anOffset, aLength);
+		rawData = null;
+	}
+
+	/**
+	 * Estimates how much heap this result occupies.
+	 * 
+	 * @return the estimated number of bytes
+	 */
+	long estimateMemoryUsage() {
+		long tempSize = ESTIMATED_INSTANCE_SIZE;
+		for (String tempString : new String[] { name, displayName, contentType }) {
+			if (tempString != null) {
+				tempSize += 2L * tempString.length();
+			}
+		}
+		byte[] tempRawData = rawData;
+		if (tempRawData != null) {
+			tempSize += tempRawData.length;
+		}
+		byte[] tempStylesheet = stylesheet;
+		if (tempStylesheet != null) {
+			tempSize += tempStylesheet.length;
+		}
+		return tempSize;
+	}
+
+	/**
+	 * Writes the header of the format stored in {@link #rawData}, which precedes the compressed data.
+	 * 
+	 * @param aTarget
+	 *            the stream to write the header to
+	 * @param anUncompressedLength
+	 *            the number of bytes of uncompressed data, including the stylesheet
+	 * @param aCodec
+	 *            the codec the data is compressed with
+	 * @throws IOException
+	 */
+	static void writeRawDataHeader(OutputStream aTarget, int anUncompressedLength, IntegrityRawDataCodec aCodec)
+			throws IOException {
+		// The header carries the codec and the uncompressed data length (in order to optimize decompression). With the
+		// GZIP codecs, it is followed by GZIP members of the data, which can be sent to clients without
+		// recompression.
+		aTarget.write(RAW_DATA_MAGIC);
+		aTarget.write(aCodec.getId());
+		aTarget.write(ByteBuffer.allocate(RAW_DATA_LENGTH_SIZE).putInt(anUncompressedLength).array());
+	}
+
+	/**
+	 * Serves the raw test report. If the client accepts GZIP-encoded content, the stored compressed data is sent
+	 * unchanged (with the compressed stylesheet in between, since GZIP members can simply be concatenated). Otherwise,
+	 * and always for data compressed with another codec, it is decompressed while being sent, uncompressed. The report
+	 * is never held in memory in uncompressed form. Reports of completed builds are immutable and may be cached by the
+	 * client.
+	 * 
+	 * @param aRequest
+	 *            the request
+	 * @param aResponse
+	 *            the response
+	 * @throws IOException
+	 */
+	public void doIndex(StaplerRequest aRequest, StaplerResponse aResponse) throws IOException {
+		if (!hasRawData()) {
+			aResponse.sendError(HttpServletResponse.SC_NOT_FOUND);
+			return;
+		}
+
+		byte[] tempHeader = new byte[RAW_DATA_HEADER_SIZE];
+		boolean tempSendGzip;
+		InputStream tempStoredStream = openStoredRawData();
+		try {
+			int tempHeaderLength = IOUtils.read(tempStoredStream, tempHeader);
+			// Data of other codecs is sent decompressed; recompressing it on every request would cost more CPU time
+			// than the smaller response saves
+			tempSendGzip = !isLegacyRawData(tempHeader, tempHeaderLength)
+					&& checkRawDataHeader(tempHeader, tempHeaderLength).isGzip()
+					&& IntegrityResponseCaching.acceptsGzip(aRequest);
+			aResponse.setHeader("Vary", "Accept-Encoding");
+			if (IntegrityResponseCaching.checkReport(getRun(), getSafeName(), tempSendGzip, aRequest, aResponse)) {
+				return;
+			}
+
+			aResponse.setContentType(getContentType());
+			if (tempSendGzip) {
+				// The rest of the stored data is exactly the GZIP stream to be sent, except for the stylesheet
+				aResponse.setHeader("Content-Encoding", "gzip");
+				long tempLength = getStoredRawDataLength() - RAW_DATA_HEADER_SIZE;
+				if (!hasStylesheet()) {
+					aResponse.setContentLength((int) tempLength);
+					IOUtils.copy(tempStoredStream, aResponse.getOutputStream(), SERVE_BUFFER_SIZE);
+					return;
+				}
+
+				aResponse.setContentLength((int) (tempLength + getStoredStylesheetLength()));
+				OutputStream tempOutputStream = aResponse.getOutputStream();
+				BoundedInputStream tempHeadStream = new BoundedInputStream(tempStoredStream,
+						stylesheetOffset - RAW_DATA_HEADER_SIZE);
+				tempHeadStream.setPropagateClose(false);
+				IOUtils.copy(tempHeadStream, tempOutputStream, SERVE_BUFFER_SIZE);
+				try (InputStream tempStylesheetStream = openStylesheet()) {
+					IOUtils.copy(tempStylesheetStream, tempOutputStream, SERVE_BUFFER_SIZE);
+				}
+				IOUtils.copy(tempStoredStream, tempOutputStream, SERVE_BUFFER_SIZE);
+				return;
+			}
+		} finally {
+			tempStoredStream.close();
+		}
+
+		aResponse.setContentLength(getUncompressedRawDataLength());
+		try (InputStream tempStream = openRawData()) {
+			IOUtils.copy(tempStream, aResponse.getOutputStream(), SERVE_BUFFER_SIZE);
+		}
+	}
+
 	@Override
 	public int getPassCount() {
 		return successCount;
@@ -323,26 +775,40 @@ public class IntegrityTestResult extends TabulatedResult {
 	}
 
 	public String getIconFileName() {
-		if (getFailCount() == 0) {
-			if (getExceptionCount() > 0) {
-				return "/plugin/de.gebit.integrity.jenkins/integrity_icon_exception.png";
-			} else {
-				return "/plugin/de.gebit.integrity.jenkins/integrity_icon_success.png";
-			}
-		} else {
-			return "/plugin/de.gebit.integrity.jenkins/integrity_icon_failure.png";
-		}
+		return IntegrityChildSummary.getIconFileName(getFailCount(), getExceptionCount());
 	}
 
 	public String getRowStyle() {
-		if (getFailCount() == 0) {
-			if (getExceptionCount() > 0) {
-				return "background-color: #fff4e0;";
-			} else {
-				return "background-color: #e2fce0;";
-			}
-		} else {
-			return "background-color: #ffe0e0;";
+		return IntegrityChildSummary.getRowStyle(getFailCount(), getExceptionCount());
+	}
+
+	/**
+	 * The place of raw data stored in a file. Immutable, so it can be published safely while reports are served.
+	 *
+	 * @author agent - initial API and implementation
+	 */
+	private static final class RawDataLocation {
+
+		/**
+		 * The file: a blob of the {@link IntegrityBlobStore}. The data format is the same as for
+		 * {@link IntegrityTestResult#rawData}.
+		 */
+		private final File file;
+
+		/**
+		 * The position of the raw data in the file.
+		 */
+		private final long offset;
+
+		/**
+		 * The number of bytes of raw data in the file.
+		 */
+		private final long length;
+
+		private RawDataLocation(File aFile, long anOffset, long aLength) {
+			file = aFile;
+			offset = anOffset;
+			length = aLength;
 		}
 	}
-}
\ No newline at end of file
+}
@@ -5,27 +5,42 @@
  *******************************************************************************/
 package de.gebit.integrity;
 
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
 import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CountingInputStream;
+import org.apache.commons.io.input.TeeInputStream;
 
 import com.google.common.base.Charsets;
 
 import javax.xml.namespace.QName;
 import javax.xml.stream.XMLEventReader;
 import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.events.Attribute;
 import javax.xml.stream.events.EndElement;
 import javax.xml.stream.events.StartElement;
@@ -39,6 +54,7 @@ import hudson.model.Run;
 import hudson.model.TaskListener;
 import hudson.remoting.VirtualChannel;
 import hudson.tasks.test.DefaultTestResultParserImpl;
+import hudson.tasks.test.TestObject;
 import hudson.tasks.test.TestResult;
 import jenkins.MasterToSlaveFileCallable;
 
@@ -55,23 +71,88 @@ public class IntegrityTestResultParser extends DefaultTestResultParserImpl {
 	private static final long serialVersionUID = 4841424533054027138L;
 
 	/**
-	 * The system property to control the maximum number of threads used to parse results.
+	 * The system property to control whether result files are parsed in streaming mode (the default), where each file
+	 * is read only once and compressed while it is being scanned. Set to "false" to read every file into memory
+	 * completely before parsing.
+	 */
+	private static final String STREAMING_SYSTEM_PROPERTY = "integrity.streaming";
+
+	/**
+	 * Whether result files are parsed in streaming mode. See {@link #STREAMING_SYSTEM_PROPERTY}.
+	 */
+	private static final boolean STREAMING = Boolean
+			.parseBoolean(System.getProperty(STREAMING_SYSTEM_PROPERTY, Boolean.TRUE.toString()));
+
+	/**
+	 * The system property to control whether the summary of a result file is first searched for near the end of the
+	 * file (the default). Set to "false" to always parse the whole file from its beginning.
+	 */
+	private static final String TAIL_SCAN_SYSTEM_PROPERTY = "integrity.tailscan";
+
+	/**
+	 * Whether summaries are searched for near the end of the files first. See {@link #TAIL_SCAN_SYSTEM_PROPERTY}.
+	 */
+	private static final boolean TAIL_SCAN = Boolean
+			.parseBoolean(System.getProperty(TAIL_SCAN_SYSTEM_PROPERTY, Boolean.TRUE.toString()));
+
+	/**
+	 * The system property to choose the scanner used to find the summary in a result file from the beginning: "bytes"
+	 * (the default) for the allocation-free {@link IntegrityByteScanner}, with StAX as fallback, or "stax" to use the
+	 * StAX-based parser only.
+	 */
+	private static final String SCANNER_SYSTEM_PROPERTY = "integrity.scanner";
+
+	/**
+	 * Whether the {@link IntegrityByteScanner} is used. See {@link #SCANNER_SYSTEM_PROPERTY}.
+	 */
+	private static final boolean BYTE_SCANNER = !"stax".equalsIgnoreCase(System.getProperty(SCANNER_SYSTEM_PROPERTY));
+
+	/**
+	 * The size of the buffers used when streaming result files.
+	 */
+	private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * One megabyte, used for log output.
+	 */
+	private static final long MEGABYTE = 1024L * 1024L;
+
+	/**
+	 * The number of bytes looked at in the beginning of a file to determine its type.
+	 */
+	private static final int HEADER_SCAN_LENGTH = 4 * 1024;
+
+	/**
+	 * The start of an XML declaration.
+	 */
+	private static final byte[] XML_DECLARATION_START = "<?xml".getBytes(Charsets.US_ASCII);
+
+	/**
+	 * The start tag of the XML data embedded in HTML result files.
+	 */
+	private static final byte[] XML_DATA_START_TAG = "<xmldata ".getBytes(Charsets.US_ASCII);
+
+	/**
+	 * The codec to compress the raw data with, or null to use the default codec of the machine doing the parsing.
 	 */
-	private static final String MAX_PARSER_THREADS_SYSTEM_PROPERTY = "integrity.threadcount";
+	private final IntegrityRawDataCodec codec;
 
 	/**
-	 * The default number of threads to use when parsing results.
+	 * Creates an instance which compresses the raw data with the default codec.
 	 */
-	private static final int MAX_PARSER_THREADS_DEFAULT = 16;
+	public IntegrityTestResultParser() {
+		this(null);
+	}
 
 	/**
-	 * The actual number of threads used when parsing results. Will be whatever is smaller: either the number of
-	 * processor cores, or whatever is configured via system property {@link #MAX_PARSER_THREADS_SYSTEM_PROPERTY} (if
-	 * nothing is configured, the default {@link #MAX_PARSER_THREADS_DEFAULT} is used).
+	 * Creates an instance.
+	 * 
+	 * @param aCodec
+	 *            the codec to compress the raw data with, or null to use the default codec
 	 */
-	private static final int MAX_PARSER_THREADS = Math.min(Integer.parseInt(
-			System.getProperty(MAX_PARSER_THREADS_SYSTEM_PROPERTY, Integer.toString(MAX_PARSER_THREADS_DEFAULT))),
-			Runtime.getRuntime().availableProcessors());
+	public IntegrityTestResultParser(IntegrityRawDataCodec aCodec) {
+		codec = aCodec;
+	}
 
 	@Override
 	protected TestResult parse(List<File> someReportFiles, Launcher launcher, TaskListener aListener)
@@ -139,13 +220,17 @@ public class IntegrityTestResultParser extends DefaultTestResultParserImpl {
 	 */
 	protected TestResult parse(FilePath workspace, List<File> someReportFiles, final TaskListener aListener) {
 		final IntegrityCompoundTestResult tempCompoundTestResult = new IntegrityCompoundTestResult();
+		// The parser threads only collect their results here; they're added (and sorted) all at once in the end
+		final Queue<IntegrityTestResult> tempParsedResults = new ConcurrentLinkedQueue<>();
 
-		ExecutorService tempExecutor = new ThreadPoolExecutor(MAX_PARSER_THREADS, MAX_PARSER_THREADS, 10L,
-				TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
-		aListener.getLogger().println("Will parse Integrity test results using " + MAX_PARSER_THREADS + " threads...");
+		IntegrityParserPool tempPool = IntegrityParserPool.getInstance();
+		IntegrityParserPool.Batch tempBatch = tempPool.createBatch();
+		aListener.getLogger().println(
+				"Will parse Integrity test results using up to " + tempPool.getThreadCount() + " shared threads...");
 
 		Set<String> tempUsedResultNames = new HashSet<>();
-		for (final File tempFile : someReportFiles) {
+		final Map<File, String> tempResultNames = new HashMap<>();
+		for (File tempFile : someReportFiles) {
 			// Prevent collisions if the same name is used by two files
 			String tempResultName = tempFile.getName();
 			int tempSuffix = 0;
@@ -154,8 +239,38 @@ public class IntegrityTestResultParser extends DefaultTestResultParserImpl {
 				tempResultName = tempFile.getName() + "_" + tempSuffix;
 			}
 			tempUsedResultNames.add(tempResultName);
+			tempResultNames.put(tempFile, tempResultName);
+		}
+
+		// All results share one copy of each distinct stylesheet, which is then transferred to the master only once
+		final ConcurrentMap<ByteBuffer, byte[]> tempStylesheets = new ConcurrentHashMap<>();
+
+		final IntegrityRawDataCodec tempCodec = (codec != null) ? codec : IntegrityRawDataCodec.getDefault();
+
+		// Optional; unchanged files are taken from here instead of being parsed again
+		final IntegrityParseCache tempParseCache = IntegrityParseCache.getInstance();
+
+		// Start with the largest files, which take the longest to parse - this minimizes the total parsing time
+		List<File> tempFilesBySize = new ArrayList<>(someReportFiles);
+		Collections.sort(tempFilesBySize, new Comparator<File>() {
 
-			final String tempFinalResultName = tempResultName;
+			@Override
+			public int compare(File aFirstFile, File aSecondFile) {
+				return Long.compare(aSecondFile.length(), aFirstFile.length());
+			}
+		});
+
+		for (final File tempFile : tempFilesBySize) {
+			final String tempFinalResultName = tempResultNames.get(tempFile);
+			final long tempEstimatedMemory = estimateMemoryUsage(tempFile, tempCodec);
+
+			if (!tempPool.tryAcquireMemory(tempEstimatedMemory)) {
+				aListener.getLogger().println("Deferring parsing of Integrity test result file "
+						+ tempFile.getAbsolutePath() + " until enough of the parser memory budget of "
+						+ (tempPool.getMemoryBudget() / MEGABYTE) + " MB is available (needs about "
+						+ (tempEstimatedMemory / MEGABYTE) + " MB)");
+				tempPool.acquireMemory(tempEstimatedMemory);
+			}
 
 			Runnable tempRunnable = new Runnable() {
 
@@ -165,134 +280,77 @@ public class IntegrityTestResultParser extends DefaultTestResultParserImpl {
 							+ " using Thread '" + Thread.currentThread().getName() + "'");
 
 					try {
-						// Read the file into memory. Mainly done to archive it in the result, but the buffer is also
-						// fed into a SAX parser below to prevent reading the file twice.
-						FileInputStream tempInputStream = new FileInputStream(tempFile);
-						final byte[] tempBuffer = new byte[(int) tempFile.length()];
-						try {
-							int tempTotalRead = 0;
-							int tempRead = 0;
-							while (tempTotalRead < tempBuffer.length && tempRead >= 0) {
-								tempRead = tempInputStream.read(tempBuffer, tempTotalRead,
-										tempBuffer.length - tempTotalRead);
-								if (tempRead > 0) {
-									tempTotalRead += tempRead;
-								}
+						IntegrityTestResult tempResult = null;
+						IntegrityParseCache.Key tempCacheKey = null;
+						if (tempParseCache != null) {
+							try {
+								tempCacheKey = tempParseCache.computeKey(tempFile, tempCodec);
+								tempResult = tempParseCache.load(tempCacheKey, tempFinalResultName,
+										tempCompoundTestResult);
+							} catch (IOException exc) {
+								aListener.getLogger().println("Could not read Integrity parse cache for "
+										+ tempFile.getAbsolutePath() + ": " + exc.getMessage());
 							}
-						} finally {
-							tempInputStream.close();
 						}
 
-						String tempContentType = null;
-						int tempXMLDataStartPos = 0;
-						int tempDoctypeEndPos = 0;
-						boolean tempIsHtml = false;
-						int tempBufferStart = 0;
-						if (tempBuffer.length > 10) {
-							// Skip some whitespace in the beginning, if there is any
-							while(tempBuffer[tempBufferStart] <= ' ' && tempBufferStart < 5) {
-								tempBufferStart++;
-							}
-							
-							if (tempBuffer[tempBufferStart + 0] == '<' && tempBuffer[tempBufferStart + 1] == '?' && tempBuffer[tempBufferStart + 2] == 'x'
-									&& tempBuffer[tempBufferStart + 3] == 'm' && tempBuffer[tempBufferStart + 4] == 'l') {
-								// This seems to be XML data
-								tempContentType = "text/xml;charset=UTF-8";
+						if (tempResult != null) {
+							aListener.getLogger().println("Reused cached parse result of Integrity test result file "
+									+ tempFile.getAbsolutePath());
+						} else {
+							if (STREAMING) {
+								tempResult = parseStreamed(tempFile, tempFinalResultName, tempCompoundTestResult,
+										tempCodec);
 							} else {
-								// This seems to be HTML
-								tempContentType = "text/html;charset=UTF-8";
-								tempIsHtml = true;
-
-								// Find out where the DOCTYPE declaration ends
-								if ("<!DOCTYPE ".equals(new String(tempBuffer, tempBufferStart , 10, "US-ASCII"))) {
-									do {
-										tempDoctypeEndPos++;
-									} while (tempDoctypeEndPos < tempBuffer.length
-											&& tempBuffer[tempDoctypeEndPos - 1] != '>');
-									tempXMLDataStartPos = tempDoctypeEndPos; // XML cannot start before the DOCTYPE
-								}
+								tempResult = parseBuffered(tempFile, tempFinalResultName, tempCompoundTestResult,
+										tempCodec);
+							}
 
-								// To increase robustness, we forward the stream to the start of the actual XML data
-								// embedded in the HTML
-								while (tempXMLDataStartPos < tempBuffer.length - 10
-										&& !(tempBuffer[tempXMLDataStartPos] == '<'
-												&& tempBuffer[tempXMLDataStartPos + 1] == 'x'
-												&& tempBuffer[tempXMLDataStartPos + 2] == 'm'
-												&& tempBuffer[tempXMLDataStartPos + 3] == 'l'
-												&& tempBuffer[tempXMLDataStartPos + 4] == 'd'
-												&& tempBuffer[tempXMLDataStartPos + 5] == 'a'
-												&& tempBuffer[tempXMLDataStartPos + 6] == 't'
-												&& tempBuffer[tempXMLDataStartPos + 7] == 'a'
-												&& tempBuffer[tempXMLDataStartPos + 8] == ' ')) {
-									tempXMLDataStartPos++;
+							if (tempCacheKey != null) {
+								try {
+									tempParseCache.store(tempCacheKey, tempResult);
+								} catch (IOException exc) {
+									aListener.getLogger().println("Could not write Integrity parse cache for "
+											+ tempFile.getAbsolutePath() + ": " + exc.getMessage());
 								}
 							}
-						}
 
-						InputStream tempFinalInputStream;
-						if (tempDoctypeEndPos > 0 && tempXMLDataStartPos < tempBuffer.length) {
-							// If we have an end position for the DOCTYPE declaration and a valid XML data start, just
-							// sequence the doctype declaration with the XML data, thereby eliminating everything in
-							// between that could cause trouble
-							tempFinalInputStream = new SequenceInputStream(
-									new ByteArrayInputStream(tempBuffer, tempBufferStart, tempDoctypeEndPos),
-									new ByteArrayInputStream(tempBuffer, tempXMLDataStartPos,
-											tempBuffer.length - tempXMLDataStartPos));
-						} else {
-							// Just start parsing where the XML begins
-							tempFinalInputStream = new ByteArrayInputStream(tempBuffer, tempXMLDataStartPos,
-									tempBuffer.length - tempXMLDataStartPos);
-						}
-
-						XMLInputFactory tempInputFactory = XMLInputFactory.newInstance();
-						tempInputFactory.setProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, false);
-						tempInputFactory.setProperty(XMLInputFactory.IS_VALIDATING, false);
-						tempInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
-						XMLEventReader tempEventReader = tempInputFactory.createXMLEventReader(tempFinalInputStream);
-
-						IntegrityContentHandler tempHandler = new IntegrityContentHandler();
-						try {
-							while (tempEventReader.hasNext() && tempHandler.handleEvent(tempEventReader.nextEvent())) {
-								// loop
-							}
-						} finally {
-							tempEventReader.close();
+							aListener.getLogger().println(
+									"Successfully parsed Integrity test result file " + tempFile.getAbsolutePath());
 						}
-
-						tempCompoundTestResult.addChild(new IntegrityTestResult(tempCompoundTestResult,
-								tempFinalResultName, tempHandler.getTestName(), tempBuffer, tempContentType,
-								tempHandler.getSuccessCount(), tempHandler.getFailureCount(),
-								tempHandler.getTestExceptionCount(), tempHandler.getCallExceptionCount()));
-
-						aListener.getLogger().println(
-								"Successfully parsed Integrity test result file " + tempFile.getAbsolutePath());
+						shareStylesheet(tempResult, tempStylesheets);
+						tempParsedResults.add(tempResult);
 					} catch (Throwable exc) {
-						aListener.getLogger().println("Exception while parsing Integrity result: " + exc.getMessage());
-						tempCompoundTestResult.addChild(new IntegrityTestResult(tempCompoundTestResult, tempFinalResultName, 
+						String tempMessage = (exc.getMessage() != null) ? exc.getMessage() : exc.toString();
+						aListener.getLogger().println("Exception while parsing Integrity result: " + tempMessage);
+						tempParsedResults.add(new IntegrityTestResult(tempCompoundTestResult, tempFinalResultName, 
 							"Parse Error in file " + tempFile.getName() + " - see build logs or this report for details",
-							exc.getMessage().getBytes(Charsets.UTF_8), "text/plain;charset=UTF-8", 0, 0, 1, 0));
+							tempMessage.getBytes(Charsets.UTF_8), "text/plain;charset=UTF-8", 0, 0, 1, 0));
+					} finally {
+						IntegrityParserPool.getInstance().releaseMemory(tempEstimatedMemory);
 					}
 				}
 			};
 
-			tempExecutor.execute(tempRunnable);
+			tempBatch.submit(tempRunnable);
 		}
 
-		tempExecutor.shutdown();
-
 		aListener.getLogger().println("Now waiting for async Integrity test result parsers to finish");
 
-		while (!tempExecutor.isTerminated()) {
+		boolean tempFinished = false;
+		while (!tempFinished) {
 			try {
-				if (!tempExecutor.awaitTermination(1, TimeUnit.DAYS)) {
-					throw new RuntimeException("Integrity test result parsing threads did not terminate in time :-( "
-							+ "since the timeout is obscenely high, this should never happen in practice");
-				}
+				tempBatch.await();
+				tempFinished = true;
 			} catch (InterruptedException exc) {
 				// ignored
 			}
 		}
 
+		if (tempParseCache != null) {
+			tempParseCache.prune();
+		}
+
+		tempCompoundTestResult.addChildren(tempParsedResults);
 		aListener.getLogger().println("Integrity test result parsers have finished, "
 				+ tempCompoundTestResult.getChildren().size() + " result(s) were parsed");
 		tempCompoundTestResult.updateCounts();
@@ -300,27 +358,410 @@ public class IntegrityTestResultParser extends DefaultTestResultParserImpl {
 		return tempCompoundTestResult;
 	}
 
-	private static class IntegrityContentHandler {
+	/**
+	 * Replaces the stylesheet split out of a result by an identical one already seen, if there is one.
+	 * 
+	 * @param aResult
+	 *            the result
+	 * @param someStylesheets
+	 *            the stylesheets seen so far
+	 */
+	private static void shareStylesheet(IntegrityTestResult aResult,
+			ConcurrentMap<ByteBuffer, byte[]> someStylesheets) {
+		byte[] tempStylesheet = aResult.getStylesheet();
+		if (tempStylesheet != null) {
+			byte[] tempSharedStylesheet = someStylesheets.putIfAbsent(ByteBuffer.wrap(tempStylesheet), tempStylesheet);
+			if (tempSharedStylesheet != null) {
+				aResult.setStylesheet(aResult.getStylesheetOffset(), tempSharedStylesheet);
+			}
+		}
+	}
 
-		/**
-		 * The number of successful tests.
-		 */
-		private int successCount;
+	/**
+	 * Estimates how much heap parsing the given file will take. When streaming, this is mostly the compressed data
+	 * (assuming a rather bad compression ratio to be on the safe side), otherwise the whole file is held in memory
+	 * together with its compressed copy. Large files compressed in parallel additionally hold the blocks in flight.
+	 * 
+	 * @param aFile
+	 *            the file
+	 * @param aCodec
+	 *            the codec the raw data is compressed with
+	 * @return the estimated number of bytes
+	 */
+	private static long estimateMemoryUsage(File aFile, IntegrityRawDataCodec aCodec) {
+		long tempLength = aFile.length();
+		long tempCompressorMemory = aCodec.estimateCompressorMemoryUsage(tempLength);
+		if (STREAMING) {
+			return tempLength / 4 + 2 * STREAM_BUFFER_SIZE + tempCompressorMemory;
+		} else {
+			return tempLength + tempLength / 4 + tempCompressorMemory;
+		}
+	}
 
-		/**
-		 * The number of failed tests.
-		 */
-		private int failureCount;
+	/**
+	 * Parses a single result file in one pass: the file is read exactly once, and every byte read is fed into the
+	 * compressor for the raw data while the summary scanner consumes the very same stream. The heap required per file
+	 * is thus bounded by the stream buffers plus the compressed data, not by the size of the file.
+	 * 
+	 * @param aFile
+	 *            the file to parse
+	 * @param aResultName
+	 *            the unique result name
+	 * @param aParent
+	 *            the parent compound result
+	 * @param aCodec
+	 *            the codec to compress the raw data with
+	 * @return the parsed result
+	 * @throws IOException
+	 * @throws XMLStreamException
+	 */
+	private static IntegrityTestResult parseStreamed(File aFile, String aResultName, TestObject aParent,
+			IntegrityRawDataCodec aCodec) throws IOException, XMLStreamException {
+		long tempLength = aFile.length();
+		if (tempLength > Integer.MAX_VALUE) {
+			throw new IOException("Integrity test result file " + aFile.getName() + " is too large (" + tempLength
+					+ " bytes)");
+		}
 
-		/**
-		 * The number of exceptions in tests.
-		 */
-		private int testExceptionCount;
+		IntegrityResultSummary tempTailSummary = TAIL_SCAN ? IntegrityTailScanner.scan(aFile) : null;
+
+		ByteArrayOutputStream tempCompressedData = new ByteArrayOutputStream(
+				(int) Math.min(tempLength / 8 + 64, STREAM_BUFFER_SIZE * 16));
+		// The stylesheet is cut out on its way into the compressor
+		IntegrityRawDataWriter tempWriter = new IntegrityRawDataWriter(tempCompressedData, (int) tempLength, aCodec);
+		IntegrityStylesheetSplitter tempCompressor = new IntegrityStylesheetSplitter(tempWriter);
+
+		String tempContentType;
+		IntegrityResultSummary tempSummary;
+		CountingInputStream tempCountingStream = null;
+		try {
+			tempCountingStream = new CountingInputStream(new FileInputStream(aFile));
+			InputStream tempInputStream = new BufferedInputStream(
+					new TeeInputStream(tempCountingStream, tempCompressor), STREAM_BUFFER_SIZE);
+
+			boolean tempIsHtml = isHtml(tempInputStream);
+			tempContentType = tempIsHtml ? "text/html;charset=UTF-8" : "text/xml;charset=UTF-8";
+			InputStream tempXMLInputStream = openXMLData(tempInputStream, tempIsHtml);
+
+			tempSummary = scanSummary(tempXMLInputStream, tempTailSummary, aFile);
+
+			// The summary is usually found before the end of the file; the remainder still has to go through the
+			// compressor though
+			byte[] tempDrainBuffer = new byte[STREAM_BUFFER_SIZE];
+			while (tempInputStream.read(tempDrainBuffer) >= 0) {
+				// drain
+			}
+		} finally {
+			if (tempCountingStream != null) {
+				tempCountingStream.close();
+			}
+			// Also if parsing failed, since the compressor holds a native deflater
+			tempCompressor.close();
+		}
+
+		if (tempCountingStream.getByteCount() != tempLength) {
+			throw new IOException("Integrity test result file " + aFile.getName() + " changed while being read");
+		}
+
+		IntegrityTestResult tempResult = new IntegrityTestResult(aParent, aResultName, tempSummary.getTestName(), null,
+				tempContentType, tempSummary.getSuccessCount(), tempSummary.getFailureCount(),
+				tempSummary.getTestExceptionCount(), tempSummary.getCallExceptionCount());
+		tempResult.setCompressedRawData(tempCompressedData.toByteArray());
+		tempResult.setStylesheet(tempWriter.getStylesheetOffset(), tempWriter.getCompressedStylesheet());
+		return tempResult;
+	}
+
+	/**
+	 * Parses a single result file by reading it into memory completely first. This was the only mode available before
+	 * {@link #parseStreamed(File, String, TestObject, IntegrityRawDataCodec)} was introduced and can be re-enabled
+	 * via {@link #STREAMING_SYSTEM_PROPERTY}.
+	 * 
+	 * @param aFile
+	 *            the file to parse
+	 * @param aResultName
+	 *            the unique result name
+	 * @param aParent
+	 *            the parent compound result
+	 * @param aCodec
+	 *            the codec to compress the raw data with
+	 * @return the parsed result
+	 * @throws IOException
+	 * @throws XMLStreamException
+	 */
+	private static IntegrityTestResult parseBuffered(File aFile, String aResultName, TestObject aParent,
+			IntegrityRawDataCodec aCodec) throws IOException, XMLStreamException {
+		// Read the file into memory. Mainly done to archive it in the result, but the buffer is also
+		// fed into a SAX parser below to prevent reading the file twice.
+		FileInputStream tempInputStream = new FileInputStream(aFile);
+		final byte[] tempBuffer = new byte[(int) aFile.length()];
+		try {
+			int tempTotalRead = 0;
+			int tempRead = 0;
+			while (tempTotalRead < tempBuffer.length && tempRead >= 0) {
+				tempRead = tempInputStream.read(tempBuffer, tempTotalRead, tempBuffer.length - tempTotalRead);
+				if (tempRead > 0) {
+					tempTotalRead += tempRead;
+				}
+			}
+		} finally {
+			tempInputStream.close();
+		}
+
+		String tempContentType = null;
+		int tempXMLDataStartPos = 0;
+		int tempDoctypeEndPos = 0;
+		int tempBufferStart = 0;
+		if (tempBuffer.length > 10) {
+			// Skip some whitespace in the beginning, if there is any
+			while (tempBuffer[tempBufferStart] <= ' ' && tempBufferStart < 5) {
+				tempBufferStart++;
+			}
+
+			if (isXmlDeclaration(tempBuffer, tempBufferStart)) {
+				// This seems to be XML data
+				tempContentType = "text/xml;charset=UTF-8";
+			} else {
+				// This seems to be HTML
+				tempContentType = "text/html;charset=UTF-8";
+
+				// Find out where the DOCTYPE declaration ends
+				if ("<!DOCTYPE ".equals(new String(tempBuffer, tempBufferStart, 10, "US-ASCII"))) {
+					do {
+						tempDoctypeEndPos++;
+					} while (tempDoctypeEndPos < tempBuffer.length && tempBuffer[tempDoctypeEndPos - 1] != '>');
+					tempXMLDataStartPos = tempDoctypeEndPos; // XML cannot start before the DOCTYPE
+				}
+
+				// To increase robustness, we forward the stream to the start of the actual XML data
+				// embedded in the HTML
+				while (tempXMLDataStartPos < tempBuffer.length - 10
+						&& !startsWith(tempBuffer, tempXMLDataStartPos, XML_DATA_START_TAG)) {
+					tempXMLDataStartPos++;
+				}
+			}
+		}
+
+		InputStream tempFinalInputStream;
+		if (tempDoctypeEndPos > 0 && tempXMLDataStartPos < tempBuffer.length) {
+			// If we have an end position for the DOCTYPE declaration and a valid XML data start, just
+			// sequence the doctype declaration with the XML data, thereby eliminating everything in
+			// between that could cause trouble
+			tempFinalInputStream = new SequenceInputStream(
+					new ByteArrayInputStream(tempBuffer, tempBufferStart, tempDoctypeEndPos),
+					new ByteArrayInputStream(tempBuffer, tempXMLDataStartPos,
+							tempBuffer.length - tempXMLDataStartPos));
+		} else {
+			// Just start parsing where the XML begins
+			tempFinalInputStream = new ByteArrayInputStream(tempBuffer, tempXMLDataStartPos,
+					tempBuffer.length - tempXMLDataStartPos);
+		}
+
+		IntegrityResultSummary tempSummary = scanSummary(tempFinalInputStream,
+				TAIL_SCAN ? IntegrityTailScanner.scan(aFile) : null, aFile);
+
+		IntegrityTestResult tempResult = new IntegrityTestResult(aParent, aResultName, tempSummary.getTestName(), null,
+				tempContentType, tempSummary.getSuccessCount(), tempSummary.getFailureCount(),
+				tempSummary.getTestExceptionCount(), tempSummary.getCallExceptionCount());
+		tempResult.setRawData(tempBuffer, aCodec);
+		return tempResult;
+	}
+
+	/**
+	 * Determines the summary of a result file. If the execution totals were already found by the
+	 * {@link IntegrityTailScanner}, only the test name is read from the start of the XML data. Otherwise the XML data
+	 * is scanned from the beginning until the totals have been found, using either the {@link IntegrityByteScanner} or
+	 * StAX (see {@link #SCANNER_SYSTEM_PROPERTY}). If the byte scanner cannot find the totals, the file is parsed again
+	 * with StAX, which either finds them or reports a proper parse error.
+	 * 
+	 * @param anInputStream
+	 *            the stream, positioned at the start of the XML data
+	 * @param aTailSummary
+	 *            the totals found by the tail scan, or null if they were not found or the tail scan is disabled
+	 * @param aFile
+	 *            the file being parsed, which is read again if a fallback to StAX is necessary
+	 * @return the summary
+	 * @throws IOException
+	 * @throws XMLStreamException
+	 */
+	private static IntegrityResultSummary scanSummary(InputStream anInputStream, IntegrityResultSummary aTailSummary,
+			File aFile) throws IOException, XMLStreamException {
+		if (aTailSummary != null) {
+			aTailSummary.setTestName(new IntegrityByteScanner().readTestName(anInputStream));
+			return aTailSummary;
+		}
+
+		if (!BYTE_SCANNER) {
+			return scanSummaryWithStAX(anInputStream);
+		}
+
+		IntegrityResultSummary tempSummary = new IntegrityByteScanner().scan(anInputStream);
+		if (tempSummary != null) {
+			return tempSummary;
+		}
+
+		InputStream tempInputStream = new BufferedInputStream(new FileInputStream(aFile), STREAM_BUFFER_SIZE);
+		try {
+			return scanSummaryWithStAX(openXMLData(tempInputStream, isHtml(tempInputStream)));
+		} finally {
+			tempInputStream.close();
+		}
+	}
+
+	/**
+	 * Feeds the given XML stream into an {@link IntegrityContentHandler} until it has found everything it needs.
+	 * 
+	 * @param anInputStream
+	 *            the stream, positioned at the start of the XML data
+	 * @return the summary
+	 * @throws XMLStreamException
+	 */
+	private static IntegrityResultSummary scanSummaryWithStAX(InputStream anInputStream) throws XMLStreamException {
+		XMLInputFactory tempInputFactory = XMLInputFactory.newInstance();
+		tempInputFactory.setProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, false);
+		tempInputFactory.setProperty(XMLInputFactory.IS_VALIDATING, false);
+		tempInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		XMLEventReader tempEventReader = tempInputFactory.createXMLEventReader(anInputStream);
+
+		IntegrityContentHandler tempHandler = new IntegrityContentHandler();
+		try {
+			while (tempEventReader.hasNext() && tempHandler.handleEvent(tempEventReader.nextEvent())) {
+				// loop
+			}
+		} finally {
+			tempEventReader.close();
+		}
+
+		return tempHandler.getSummary();
+	}
+
+	/**
+	 * Looks at the beginning of a result file to find out whether it is an HTML file (or an XML file otherwise). The
+	 * stream is reset to where it was before.
+	 * 
+	 * @param aStream
+	 *            a stream supporting mark/reset, positioned at the beginning of the file
+	 * @return true if the file is an HTML file
+	 * @throws IOException
+	 */
+	private static boolean isHtml(InputStream aStream) throws IOException {
+		byte[] tempHeader = readHeader(aStream);
+		return tempHeader.length > 10 && !isXmlDeclaration(tempHeader, skipLeadingWhitespace(tempHeader));
+	}
+
+	/**
+	 * Positions the given stream at the start of the XML data. For HTML files, everything before the XML data embedded
+	 * in the HTML is skipped in order to increase robustness, except for the DOCTYPE declaration.
+	 * 
+	 * @param aStream
+	 *            a stream supporting mark/reset, positioned at the beginning of the file
+	 * @param anIsHtml
+	 *            whether the file is an HTML file
+	 * @return a stream providing the XML data (which reads from the given stream)
+	 * @throws IOException
+	 */
+	private static InputStream openXMLData(InputStream aStream, boolean anIsHtml) throws IOException {
+		byte[] tempHeader = readHeader(aStream);
+		int tempHeaderStart = skipLeadingWhitespace(tempHeader);
+		IOUtils.skipFully(aStream, tempHeaderStart);
+		if (!anIsHtml) {
+			return aStream;
+		}
+
+		// Find out where the DOCTYPE declaration ends; it is kept (and is the only thing we keep from the HTML part of
+		// the file)
+		byte[] tempDoctype = null;
+		if (tempHeader.length - tempHeaderStart >= 10
+				&& "<!DOCTYPE ".equals(new String(tempHeader, tempHeaderStart, 10, "US-ASCII"))) {
+			int tempDoctypeEnd = tempHeaderStart;
+			while (tempDoctypeEnd < tempHeader.length && tempHeader[tempDoctypeEnd] != '>') {
+				tempDoctypeEnd++;
+			}
+			if (tempDoctypeEnd < tempHeader.length) {
+				tempDoctype = Arrays.copyOfRange(tempHeader, tempHeaderStart, tempDoctypeEnd + 1);
+				IOUtils.skipFully(aStream, tempDoctype.length);
+			}
+		}
+
+		PushbackInputStream tempXMLDataStream = new PushbackInputStream(aStream, XML_DATA_START_TAG.length);
+		if (skipToXMLData(tempXMLDataStream)) {
+			tempXMLDataStream.unread(XML_DATA_START_TAG);
+		}
+
+		if (tempDoctype != null) {
+			return new SequenceInputStream(new ByteArrayInputStream(tempDoctype), tempXMLDataStream);
+		} else {
+			return tempXMLDataStream;
+		}
+	}
+
+	private static byte[] readHeader(InputStream aStream) throws IOException {
+		aStream.mark(HEADER_SCAN_LENGTH);
+		byte[] tempHeader = new byte[HEADER_SCAN_LENGTH];
+		int tempHeaderLength = IOUtils.read(aStream, tempHeader);
+		aStream.reset();
+
+		return Arrays.copyOf(tempHeader, tempHeaderLength);
+	}
+
+	private static int skipLeadingWhitespace(byte[] aHeader) {
+		int tempHeaderStart = 0;
+		if (aHeader.length > 10) {
+			// Skip some whitespace in the beginning, if there is any
+			while (aHeader[tempHeaderStart] <= ' ' && tempHeaderStart < 5) {
+				tempHeaderStart++;
+			}
+		}
+		return tempHeaderStart;
+	}
+
+	/**
+	 * Reads from the given stream until just after the start tag of the XML data embedded in HTML reports.
+	 * 
+	 * @param anInputStream
+	 *            the stream
+	 * @return true if the start tag was found, false if the end of the stream was reached
+	 * @throws IOException
+	 */
+	private static boolean skipToXMLData(InputStream anInputStream) throws IOException {
+		int tempMatched = 0;
+		int tempByte;
+		while ((tempByte = anInputStream.read()) >= 0) {
+			if (tempByte == XML_DATA_START_TAG[tempMatched]) {
+				tempMatched++;
+				if (tempMatched == XML_DATA_START_TAG.length) {
+					return true;
+				}
+			} else {
+				// The tag starts with the only '<' in it, so a simple restart is enough here
+				tempMatched = (tempByte == XML_DATA_START_TAG[0]) ? 1 : 0;
+			}
+		}
+
+		return false;
+	}
+
+	private static boolean isXmlDeclaration(byte[] aBuffer, int aPosition) {
+		return startsWith(aBuffer, aPosition, XML_DECLARATION_START);
+	}
+
+	private static boolean startsWith(byte[] aBuffer, int aPosition, byte[] aPrefix) {
+		if (aPosition + aPrefix.length > aBuffer.length) {
+			return false;
+		}
+		for (int i = 0; i < aPrefix.length; i++) {
+			if (aBuffer[aPosition + i] != aPrefix[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static class IntegrityContentHandler {
 
 		/**
-		 * The number of exceptions in calls.
+		 * The summary being filled.
 		 */
-		private int callExceptionCount;
+		private final IntegrityResultSummary summary = new IntegrityResultSummary();
 
 		/**
 		 * The depth of the stack of suites at the moment.
@@ -332,29 +773,8 @@ public class IntegrityTestResultParser extends DefaultTestResultParserImpl {
 		 */
 		private boolean insideXslt;
 
-		/**
-		 * The name of the test run.
-		 */
-		private String testName;
-
-		public int getSuccessCount() {
-			return successCount;
-		}
-
-		public int getFailureCount() {
-			return failureCount;
-		}
-
-		public int getTestExceptionCount() {
-			return testExceptionCount;
-		}
-
-		public int getCallExceptionCount() {
-			return callExceptionCount;
-		}
-
-		public String getTestName() {
-			return testName;
+		public IntegrityResultSummary getSummary() {
+			return summary;
 		}
 
 		public boolean handleEvent(XMLEvent anEvent) {
@@ -370,7 +790,7 @@ public class IntegrityTestResultParser extends DefaultTestResultParserImpl {
 					if ("suite".equals(tempStartEvent.getName().getLocalPart())) {
 						suiteStackDepth++;
 					} else if ("integrity".equals(tempStartEvent.getName().getLocalPart())) {
-						testName = tempStartEvent.getAttributeByName(new QName("name")).getValue();
+						summary.setTestName(tempStartEvent.getAttributeByName(new QName("name")).getValue());
 					} else if ("result".equals(tempStartEvent.getName().getLocalPart())) {
 						if (suiteStackDepth == 1 && tempStartEvent.getAttributeByName(new QName("type")) == null) {
 							// This seems to be the outermost suite result element (call results are also <result>
@@ -379,30 +799,34 @@ public class IntegrityTestResultParser extends DefaultTestResultParserImpl {
 							// totals
 							// from this one and rely on Integrity for summing them up correctly.
 
-							String tempSuccessCount
-									= getValueIgnoreCase(tempStartEvent.getAttributes(), "successCount");
-							if (tempSuccessCount != null) {
-								successCount = Integer.parseInt(tempSuccessCount);
+							int tempSuccessCount = summary.getSuccessCount();
+							int tempFailureCount = summary.getFailureCount();
+							int tempTestExceptionCount = summary.getTestExceptionCount();
+							int tempCallExceptionCount = summary.getCallExceptionCount();
+
+							String tempValue = getValueIgnoreCase(tempStartEvent.getAttributes(), "successCount");
+							if (tempValue != null) {
+								tempSuccessCount = Integer.parseInt(tempValue);
 							}
 
-							String tempFailureCount
-									= getValueIgnoreCase(tempStartEvent.getAttributes(), "failureCount");
-							if (tempFailureCount != null) {
-								failureCount = Integer.parseInt(tempFailureCount);
+							tempValue = getValueIgnoreCase(tempStartEvent.getAttributes(), "failureCount");
+							if (tempValue != null) {
+								tempFailureCount = Integer.parseInt(tempValue);
 							}
 
-							String tempTestExceptionCount
-									= getValueIgnoreCase(tempStartEvent.getAttributes(), "testExceptionCount");
-							if (tempTestExceptionCount != null) {
-								testExceptionCount = Integer.parseInt(tempTestExceptionCount);
+							tempValue = getValueIgnoreCase(tempStartEvent.getAttributes(), "testExceptionCount");
+							if (tempValue != null) {
+								tempTestExceptionCount = Integer.parseInt(tempValue);
 							}
 
-							String tempCallExceptionCount
-									= getValueIgnoreCase(tempStartEvent.getAttributes(), "callExceptionCount");
-							if (tempTestExceptionCount != null) {
-								callExceptionCount = Integer.parseInt(tempCallExceptionCount);
+							tempValue = getValueIgnoreCase(tempStartEvent.getAttributes(), "callExceptionCount");
+							if (tempValue != null) {
+								tempCallExceptionCount = Integer.parseInt(tempValue);
 							}
 
+							summary.setCounts(tempSuccessCount, tempFailureCount, tempTestExceptionCount,
+									tempCallExceptionCount);
+
 							// When we've arrived here, we have parsed everything necessary out of the file!
 							return false;
 						}
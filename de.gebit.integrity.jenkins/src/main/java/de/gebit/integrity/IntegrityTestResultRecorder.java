@@ -11,6 +11,7 @@ import java.io.IOException;
 
 import org.kohsuke.stapler.AncestorInPath;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 import org.kohsuke.stapler.QueryParameter;
 
 import hudson.AbortException;
@@ -26,6 +27,7 @@ import hudson.tasks.BuildStepMonitor;
 import hudson.tasks.Publisher;
 import hudson.tasks.Recorder;
 import hudson.util.FormValidation;
+import hudson.util.ListBoxModel;
 import jenkins.tasks.SimpleBuildStep;
 
 /**
@@ -51,6 +53,11 @@ public class IntegrityTestResultRecorder extends Recorder implements SimpleBuild
 	 */
 	private final Boolean failOnTestErrors;
 
+	/**
+	 * The name of the {@link IntegrityRawDataCodec} to compress the archived reports with, or null for the default.
+	 */
+	private String compressionCodec;
+
 	/**
 	 * Creates a new instance.
 	 * 
@@ -78,6 +85,15 @@ public class IntegrityTestResultRecorder extends Recorder implements SimpleBuild
 		return failOnTestErrors;
 	}
 
+	public String getCompressionCodec() {
+		return compressionCodec;
+	}
+
+	@DataBoundSetter
+	public void setCompressionCodec(String compressionCodec) {
+		this.compressionCodec = compressionCodec;
+	}
+
 	@Override
 	public BuildStepMonitor getRequiredMonitorService() {
 		return BuildStepMonitor.NONE;
@@ -103,7 +119,9 @@ public class IntegrityTestResultRecorder extends Recorder implements SimpleBuild
 		final String tempExpandedTestResults = aRun.getEnvironment(aListener).expand(this.testResultFileNamePattern);
 
 		try {
-			IntegrityCompoundTestResult tempResult = (IntegrityCompoundTestResult) new IntegrityTestResultParser()
+			IntegrityTestResultParser tempParser = new IntegrityTestResultParser(
+					IntegrityRawDataCodec.parse(compressionCodec, null));
+			IntegrityCompoundTestResult tempResult = (IntegrityCompoundTestResult) tempParser
 					.parseResult(tempExpandedTestResults, aRun, aWorkspace, aLauncher, aListener);
 
 			try {
@@ -132,6 +150,7 @@ public class IntegrityTestResultRecorder extends Recorder implements SimpleBuild
 		}
 
 		aRun.addAction(tempResultAction);
+		IntegrityProjectAction.buildUpdated(aRun);
 
 		if (tempResultAction.getResult().getFailCount() > 0 || tempResultAction.getResult().getSkipCount() > 0
 				|| tempResultAction.getResult().getExceptionCount() > 0) {
@@ -180,6 +199,38 @@ public class IntegrityTestResultRecorder extends Recorder implements SimpleBuild
 			return FilePath.validateFileMask(aProject.getSomeWorkspace(), aValue);
 		}
 
+		/**
+		 * Fills the selection of the compression codec.
+		 * 
+		 * @return the codecs
+		 */
+		public ListBoxModel doFillCompressionCodecItems() {
+			return createCompressionCodecItems();
+		}
+
+		/**
+		 * Creates the selectable compression codecs. The first entry stands for the default codec.
+		 * 
+		 * @return the codecs
+		 */
+		static ListBoxModel createCompressionCodecItems() {
+			ListBoxModel tempItems = new ListBoxModel();
+			tempItems.add("Default (" + IntegrityRawDataCodec.getDefault().getDisplayName() + ")", "");
+			for (IntegrityRawDataCodec tempCodec : IntegrityRawDataCodec.values()) {
+				tempItems.add(tempCodec.getDisplayName(), tempCodec.name());
+			}
+			return tempItems;
+		}
+
+		/**
+		 * Returns the statistics of the result cache, for display in the global configuration.
+		 * 
+		 * @return the statistics
+		 */
+		public String getResultCacheStatistics() {
+			return IntegrityResultCache.getInstance().getStatistics();
+		}
+
 	}
 
 }
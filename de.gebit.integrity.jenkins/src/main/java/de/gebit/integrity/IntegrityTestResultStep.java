@@ -18,6 +18,7 @@ import org.jenkinsci.plugins.workflow.steps.StepContext;
 import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
 import org.jenkinsci.plugins.workflow.steps.StepExecution;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.DataBoundSetter;
 
 import com.google.common.collect.ImmutableSet;
 
@@ -25,6 +26,7 @@ import hudson.Extension;
 import hudson.FilePath;
 import hudson.Launcher;
 import hudson.model.TaskListener;
+import hudson.util.ListBoxModel;
 
 /**
  * The step for pipeline builds.
@@ -54,6 +56,11 @@ public class IntegrityTestResultStep extends Step implements Serializable {
 	 */
 	private final Boolean failOnTestErrors;
 
+	/**
+	 * The name of the {@link IntegrityRawDataCodec} to compress the archived reports with, or null for the default.
+	 */
+	private String compressionCodec;
+
 	@DataBoundConstructor
 	public IntegrityTestResultStep(String testResultFileNamePattern, Boolean ignoreNoResults,
 			Boolean failOnTestErrors) {
@@ -74,6 +81,15 @@ public class IntegrityTestResultStep extends Step implements Serializable {
 		return failOnTestErrors;
 	}
 
+	public String getCompressionCodec() {
+		return compressionCodec;
+	}
+
+	@DataBoundSetter
+	public void setCompressionCodec(String compressionCodec) {
+		this.compressionCodec = compressionCodec;
+	}
+
 	@Override
 	public StepExecution start(StepContext context) throws Exception {
 		return new IntegrityTestResultStepExecution(this, context);
@@ -97,6 +113,15 @@ public class IntegrityTestResultStep extends Step implements Serializable {
 		public Set<? extends Class<?>> getRequiredContext() {
 			return ImmutableSet.of(FilePath.class, FlowNode.class, TaskListener.class, Launcher.class);
 		}
+
+		/**
+		 * Fills the selection of the compression codec.
+		 * 
+		 * @return the codecs
+		 */
+		public ListBoxModel doFillCompressionCodecItems() {
+			return IntegrityTestResultRecorder.DescriptorImpl.createCompressionCodecItems();
+		}
 	}
 
 }
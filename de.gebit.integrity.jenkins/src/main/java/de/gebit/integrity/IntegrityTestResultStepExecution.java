@@ -47,6 +47,7 @@ public class IntegrityTestResultStepExecution extends SynchronousNonBlockingStep
 
 		IntegrityTestResultRecorder tempRecorder = new IntegrityTestResultRecorder(step.getTestResultFileNamePattern(),
 				step.getIgnoreNoResults(), step.getFailOnTestErrors());
+		tempRecorder.setCompressionCodec(step.getCompressionCodec());
 
 		tempRecorder.perform(tempBuild, tempWorkspace, tempLauncher, tempListener);
 
@@ -0,0 +1,545 @@
+/*******************************************************************************
+ * Copyright (c) 2026 agent and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package de.gebit.integrity;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import hudson.model.AbstractBuild;
+import hudson.model.Job;
+import hudson.model.Run;
+
+/**
+ * The trend index of a job: an append-only file in the job directory which contains the counts of every build with
+ * Integrity results. The trend graph is drawn from this index alone, so it doesn't need to load any build records.
+ * <p>
+ * A record is appended whenever a build with results is finalized, and a removal record is appended whenever such a
+ * build is deleted. If the index doesn't exist (for example because the builds were recorded by an older version), it
+ * is rebuilt from the build records once; the child counts of builds recorded by older versions are unknown then,
+ * since counting them would load all their results. When most records of the file are obsolete because their builds
+ * were deleted again, the file is compacted.
+ * <p>
+ * The parsed entries are kept in memory per job, so the file is only read again after it has changed.
+ *
+ * @author agent - initial API and implementation
+ */
+public final class IntegrityTrendIndex {
+
+	/**
+	 * The name of the index file in the job directory.
+	 */
+	private static final String FILE_NAME = "integrityTrend.bin";
+
+	/**
+	 * The magic bytes at the start of the file.
+	 */
+	private static final byte[] MAGIC = { 'I', 'T', 'I' };
+
+	/**
+	 * The version of the file format.
+	 */
+	private static final byte VERSION = 1;
+
+	/**
+	 * The type of a record which adds a build.
+	 */
+	private static final byte RECORD_ADDED = 0;
+
+	/**
+	 * The type of a record which removes a build.
+	 */
+	private static final byte RECORD_REMOVED = 1;
+
+	/**
+	 * The child counts of builds whose results were persisted by older versions, which can't be counted without
+	 * loading all results.
+	 */
+	public static final int UNKNOWN_COUNT = -1;
+
+	/**
+	 * The minimum number of records in a file before it is compacted, so small files aren't rewritten needlessly.
+	 */
+	private static final int COMPACTION_MIN_RECORDS = 64;
+
+	/**
+	 * The locks guarding the index files, by job directory. Rebuilding an index may take long, so each job has its own
+	 * lock.
+	 */
+	private static final ConcurrentMap<File, Object> LOCKS = new ConcurrentHashMap<File, Object>();
+
+	/**
+	 * The parsed entries of the index files, by file. Guarded by the lock of the respective job.
+	 */
+	private static final ConcurrentMap<File, CachedEntries> CACHE = new ConcurrentHashMap<File, CachedEntries>();
+
+	private IntegrityTrendIndex() {
+		// static methods only
+	}
+
+	/**
+	 * Returns the entries of all builds of the given job which have results, newest first. The index is rebuilt if it
+	 * doesn't exist yet.
+	 *
+	 * @param aJob
+	 *            the job
+	 * @return the entries
+	 */
+	public static List<Entry> getEntries(Job<?, ?> aJob) {
+		synchronized (getLock(aJob)) {
+			File tempFile = getFile(aJob);
+			if (tempFile.exists()) {
+				CachedEntries tempCached = CACHE.get(tempFile);
+				if (tempCached != null && tempCached.length == tempFile.length()
+						&& tempCached.lastModified == tempFile.lastModified()) {
+					return tempCached.entries;
+				}
+
+				try {
+					return read(tempFile);
+				} catch (IOException exc) {
+					exc.printStackTrace();
+				}
+			}
+
+			return rebuild(aJob);
+		}
+	}
+
+	/**
+	 * Returns the point in time when the index of the given job last changed. The index is rebuilt if it doesn't exist
+	 * yet.
+	 *
+	 * @param aJob
+	 *            the job
+	 * @return the time in milliseconds
+	 */
+	public static long getLastModified(Job<?, ?> aJob) {
+		synchronized (getLock(aJob)) {
+			return getExistingFile(aJob).lastModified();
+		}
+	}
+
+	/**
+	 * Returns an opaque version of the index of the given job, which changes whenever a build is added or removed.
+	 * Since the index is append-only, its size and modification time are enough. The index is rebuilt if it doesn't
+	 * exist yet.
+	 *
+	 * @param aJob
+	 *            the job
+	 * @return the version
+	 */
+	public static String getVersion(Job<?, ?> aJob) {
+		synchronized (getLock(aJob)) {
+			File tempFile = getExistingFile(aJob);
+			return tempFile.length() + ":" + tempFile.lastModified();
+		}
+	}
+
+	/**
+	 * Adds a finished build to the index of its job.
+	 *
+	 * @param aRun
+	 *            the build, which must have results
+	 */
+	public static void add(Run<?, ?> aRun) {
+		IntegrityTestResultAction tempAction = aRun.getAction(IntegrityTestResultAction.class);
+		if (tempAction == null || tempAction.getResult() == null) {
+			return;
+		}
+
+		synchronized (getLock(aRun.getParent())) {
+			File tempFile = getFile(aRun.getParent());
+			if (!tempFile.exists()) {
+				// The rebuild includes the new build
+				rebuild(aRun.getParent());
+				return;
+			}
+
+			try (DataOutputStream tempOut = openForAppend(tempFile)) {
+				writeEntry(tempOut, new Entry(aRun, tempAction.getResult(), true));
+			} catch (IOException exc) {
+				exc.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Removes a deleted build from the index of its job.
+	 *
+	 * @param aRun
+	 *            the build
+	 */
+	public static void remove(Run<?, ?> aRun) {
+		synchronized (getLock(aRun.getParent())) {
+			File tempFile = getFile(aRun.getParent());
+			if (!tempFile.exists()) {
+				return;
+			}
+
+			try (DataOutputStream tempOut = openForAppend(tempFile)) {
+				tempOut.writeByte(RECORD_REMOVED);
+				tempOut.writeInt(aRun.getNumber());
+			} catch (IOException exc) {
+				exc.printStackTrace();
+			}
+		}
+	}
+
+	private static Object getLock(Job<?, ?> aJob) {
+		File tempJobDirectory = aJob.getRootDir();
+		Object tempLock = LOCKS.get(tempJobDirectory);
+		if (tempLock == null) {
+			Object tempNewLock = new Object();
+			tempLock = LOCKS.putIfAbsent(tempJobDirectory, tempNewLock);
+			if (tempLock == null) {
+				tempLock = tempNewLock;
+			}
+		}
+		return tempLock;
+	}
+
+	private static File getFile(Job<?, ?> aJob) {
+		return new File(aJob.getRootDir(), FILE_NAME);
+	}
+
+	private static File getExistingFile(Job<?, ?> aJob) {
+		File tempFile = getFile(aJob);
+		if (!tempFile.exists()) {
+			rebuild(aJob);
+		}
+		return tempFile;
+	}
+
+	private static DataOutputStream openForAppend(File aFile) throws IOException {
+		return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(aFile, true)));
+	}
+
+	/**
+	 * Rebuilds the index from the build records, which requires all of them to be loaded. The results themselves are
+	 * never loaded; builds without child summaries get unknown child counts.
+	 */
+	private static List<Entry> rebuild(Job<?, ?> aJob) {
+		List<Entry> tempEntries = new ArrayList<Entry>();
+		for (Run<?, ?> tempRun : aJob.getBuilds()) {
+			if (tempRun.isBuilding()) {
+				// Will be added when finished
+				continue;
+			}
+			IntegrityTestResultAction tempAction = tempRun.getAction(IntegrityTestResultAction.class);
+			IntegrityCompoundTestResult tempResult = (tempAction != null) ? tempAction.getResult() : null;
+			if (tempResult != null) {
+				tempEntries.add(new Entry(tempRun, tempResult, tempResult.hasChildSummaries()));
+			}
+		}
+
+		List<Entry> tempUnmodifiableEntries = Collections.unmodifiableList(tempEntries);
+		write(getFile(aJob), tempUnmodifiableEntries);
+		return tempUnmodifiableEntries;
+	}
+
+	/**
+	 * Replaces the index file with one containing just the given entries, and caches these.
+	 */
+	private static void write(File aFile, List<Entry> someEntries) {
+		File tempTempFile = new File(aFile.getParentFile(), aFile.getName() + ".tmp");
+		try {
+			try (DataOutputStream tempOut = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(tempTempFile)))) {
+				tempOut.write(MAGIC);
+				tempOut.writeByte(VERSION);
+				// Oldest first, like later additions
+				for (int i = someEntries.size() - 1; i >= 0; i--) {
+					writeEntry(tempOut, someEntries.get(i));
+				}
+			}
+			Files.move(tempTempFile.toPath(), aFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+			CACHE.put(aFile, new CachedEntries(aFile, someEntries));
+		} catch (IOException exc) {
+			exc.printStackTrace();
+			tempTempFile.delete();
+		}
+	}
+
+	/**
+	 * Reads the index file and caches its entries. The file is compacted if most of its records are obsolete.
+	 */
+	private static List<Entry> read(File aFile) throws IOException {
+		TreeMap<Integer, Entry> tempEntries = new TreeMap<Integer, Entry>(Collections.reverseOrder());
+		int tempRecordCount = 0;
+		try (DataInputStream tempIn = new DataInputStream(new BufferedInputStream(new FileInputStream(aFile)))) {
+			for (int i = 0; i < MAGIC.length; i++) {
+				if (tempIn.readByte() != MAGIC[i]) {
+					throw new IOException(aFile + " is not an Integrity trend index");
+				}
+			}
+			byte tempVersion = tempIn.readByte();
+			if (tempVersion != VERSION) {
+				throw new IOException(aFile + " has unsupported version " + tempVersion);
+			}
+
+			while (true) {
+				int tempType = tempIn.read();
+				if (tempType < 0) {
+					break;
+				}
+				tempRecordCount++;
+
+				try {
+					if (tempType == RECORD_ADDED) {
+						Entry tempEntry = readEntry(tempIn);
+						// A build can only show one result, which is the first one recorded
+						if (!tempEntries.containsKey(tempEntry.buildNumber)) {
+							tempEntries.put(tempEntry.buildNumber, tempEntry);
+						}
+					} else if (tempType == RECORD_REMOVED) {
+						tempEntries.remove(tempIn.readInt());
+					} else {
+						throw new IOException(aFile + " is corrupt");
+					}
+				} catch (EOFException exc) {
+					// The last record was not written completely; it is simply ignored
+					break;
+				}
+			}
+		}
+
+		List<Entry> tempResult = Collections.unmodifiableList(new ArrayList<Entry>(tempEntries.values()));
+		if (tempRecordCount >= COMPACTION_MIN_RECORDS && tempRecordCount > 2 * tempResult.size()) {
+			// Mostly removal records and the additions they cancel out
+			write(aFile, tempResult);
+		} else {
+			CACHE.put(aFile, new CachedEntries(aFile, tempResult));
+		}
+		return tempResult;
+	}
+
+	private static void writeEntry(DataOutputStream aTarget, Entry anEntry) throws IOException {
+		aTarget.writeByte(RECORD_ADDED);
+		aTarget.writeInt(anEntry.buildNumber);
+		aTarget.writeLong(anEntry.timestamp);
+		aTarget.writeInt(anEntry.passCount);
+		aTarget.writeInt(anEntry.failCount);
+		aTarget.writeInt(anEntry.skipCount);
+		aTarget.writeInt(anEntry.testExceptionCount);
+		aTarget.writeInt(anEntry.callExceptionCount);
+		aTarget.writeInt(anEntry.passChildCount);
+		aTarget.writeInt(anEntry.failChildCount);
+		aTarget.writeInt(anEntry.exceptionChildCount);
+		aTarget.writeUTF(anEntry.label);
+	}
+
+	private static Entry readEntry(DataInputStream aSource) throws IOException {
+		Entry tempEntry = new Entry();
+		tempEntry.buildNumber = aSource.readInt();
+		tempEntry.timestamp = aSource.readLong();
+		tempEntry.passCount = aSource.readInt();
+		tempEntry.failCount = aSource.readInt();
+		tempEntry.skipCount = aSource.readInt();
+		tempEntry.testExceptionCount = aSource.readInt();
+		tempEntry.callExceptionCount = aSource.readInt();
+		tempEntry.passChildCount = aSource.readInt();
+		tempEntry.failChildCount = aSource.readInt();
+		tempEntry.exceptionChildCount = aSource.readInt();
+		tempEntry.label = aSource.readUTF();
+		return tempEntry;
+	}
+
+	/**
+	 * The counts of one build.
+	 *
+	 * @author agent - initial API and implementation
+	 */
+	public static final class Entry {
+
+		/**
+		 * The number of the build.
+		 */
+		private int buildNumber;
+
+		/**
+		 * The time when the build was started.
+		 */
+		private long timestamp;
+
+		/**
+		 * The number of successful tests.
+		 */
+		private int passCount;
+
+		/**
+		 * The number of failures.
+		 */
+		private int failCount;
+
+		/**
+		 * The number of skipped tests.
+		 */
+		private int skipCount;
+
+		/**
+		 * The number of test exceptions.
+		 */
+		private int testExceptionCount;
+
+		/**
+		 * The number of call exceptions.
+		 */
+		private int callExceptionCount;
+
+		/**
+		 * The number of results without failures and exceptions, or {@link IntegrityTrendIndex#UNKNOWN_COUNT}.
+		 */
+		private int passChildCount;
+
+		/**
+		 * The number of results with failures, or {@link IntegrityTrendIndex#UNKNOWN_COUNT}.
+		 */
+		private int failChildCount;
+
+		/**
+		 * The number of results with exceptions, or {@link IntegrityTrendIndex#UNKNOWN_COUNT}.
+		 */
+		private int exceptionChildCount;
+
+		/**
+		 * The label of the build in the trend graph.
+		 */
+		private String label;
+
+		private Entry() {
+			// filled when read
+		}
+
+		/**
+		 * Creates the entry of a build. The totals are persisted with the results, but the child counts may require
+		 * the results to be loaded.
+		 *
+		 * @param aRun
+		 *            the build
+		 * @param aResult
+		 *            its results
+		 * @param aChildCountsFlag
+		 *            whether the child counts are determined; if not, they are unknown
+		 */
+		private Entry(Run<?, ?> aRun, IntegrityCompoundTestResult aResult, boolean aChildCountsFlag) {
+			buildNumber = aRun.getNumber();
+			timestamp = aRun.getTimeInMillis();
+			passCount = aResult.getPassCount();
+			failCount = aResult.getFailCount();
+			skipCount = aResult.getSkipCount();
+			testExceptionCount = aResult.getTestExceptionCount();
+			callExceptionCount = aResult.getCallExceptionCount();
+			if (aChildCountsFlag) {
+				passChildCount = aResult.getPassChildCount();
+				failChildCount = aResult.getFailChildCount();
+				exceptionChildCount = aResult.getExceptionChildCount();
+			} else {
+				passChildCount = UNKNOWN_COUNT;
+				failChildCount = UNKNOWN_COUNT;
+				exceptionChildCount = UNKNOWN_COUNT;
+			}
+
+			label = String.valueOf(aRun.getDisplayName());
+			if (aRun instanceof AbstractBuild<?, ?>) {
+				String tempBuiltOn = ((AbstractBuild<?, ?>) aRun).getBuiltOnStr();
+				if (tempBuiltOn != null) {
+					label += ' ' + tempBuiltOn;
+				}
+			}
+		}
+
+		public int getBuildNumber() {
+			return buildNumber;
+		}
+
+		public long getTimestamp() {
+			return timestamp;
+		}
+
+		public int getPassCount() {
+			return passCount;
+		}
+
+		public int getFailCount() {
+			return failCount;
+		}
+
+		public int getSkipCount() {
+			return skipCount;
+		}
+
+		public int getTestExceptionCount() {
+			return testExceptionCount;
+		}
+
+		public int getCallExceptionCount() {
+			return callExceptionCount;
+		}
+
+		public int getPassChildCount() {
+			return passChildCount;
+		}
+
+		public int getFailChildCount() {
+			return failChildCount;
+		}
+
+		public int getExceptionChildCount() {
+			return exceptionChildCount;
+		}
+
+		public String getLabel() {
+			return label;
+		}
+	}
+
+	/**
+	 * The parsed entries of an index file, together with the state of the file they were read from.
+	 *
+	 * @author agent - initial API and implementation
+	 */
+	private static final class CachedEntries {
+
+		/**
+		 * The length of the file.
+		 */
+		private final long length;
+
+		/**
+		 * The modification time of the file.
+		 */
+		private final long lastModified;
+
+		/**
+		 * The entries, newest first.
+		 */
+		private final List<Entry> entries;
+
+		private CachedEntries(File aFile, List<Entry> someEntries) {
+			length = aFile.length();
+			lastModified = aFile.lastModified();
+			entries = someEntries;
+		}
+	}
+}
@@ -0,0 +1,214 @@
+/*******************************************************************************
+ * Copyright (c) 2026 agent and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package de.gebit.integrity;
+
+import java.util.List;
+
+/**
+ * One point of the trend graph. This is either a single build, or a bucket of consecutive builds whose counts are
+ * aggregated.
+ *
+ * @author agent - initial API and implementation
+ */
+public class IntegrityTrendPoint {
+
+	/**
+	 * The number of the oldest build of the point.
+	 */
+	private final int firstBuildNumber;
+
+	/**
+	 * The number of the newest build of the point.
+	 */
+	private final int lastBuildNumber;
+
+	/**
+	 * The number of builds in the point.
+	 */
+	private final int buildCount;
+
+	/**
+	 * The label of the point.
+	 */
+	private final String label;
+
+	/**
+	 * The numbers of successful tests.
+	 */
+	private final Range passCounts = new Range();
+
+	/**
+	 * The numbers of failures.
+	 */
+	private final Range failCounts = new Range();
+
+	/**
+	 * The numbers of skipped tests.
+	 */
+	private final Range skipCounts = new Range();
+
+	/**
+	 * Creates a point aggregating the given builds.
+	 *
+	 * @param someEntries
+	 *            the trend index entries of the builds, newest first (must not be empty)
+	 */
+	public IntegrityTrendPoint(List<IntegrityTrendIndex.Entry> someEntries) {
+		IntegrityTrendIndex.Entry tempNewest = someEntries.get(0);
+		IntegrityTrendIndex.Entry tempOldest = someEntries.get(someEntries.size() - 1);
+		firstBuildNumber = tempOldest.getBuildNumber();
+		lastBuildNumber = tempNewest.getBuildNumber();
+		buildCount = someEntries.size();
+		label = (buildCount == 1) ? tempNewest.getLabel() : "#" + firstBuildNumber + "-#" + lastBuildNumber;
+
+		for (IntegrityTrendIndex.Entry tempEntry : someEntries) {
+			passCounts.add(tempEntry.getPassCount());
+			failCounts.add(tempEntry.getFailCount());
+			skipCounts.add(tempEntry.getSkipCount());
+		}
+	}
+
+	public int getFirstBuildNumber() {
+		return firstBuildNumber;
+	}
+
+	public int getLastBuildNumber() {
+		return lastBuildNumber;
+	}
+
+	public int getBuildCount() {
+		return buildCount;
+	}
+
+	public String getLabel() {
+		return label;
+	}
+
+	public Range getPassCounts() {
+		return passCounts;
+	}
+
+	public Range getFailCounts() {
+		return failCounts;
+	}
+
+	public Range getSkipCounts() {
+		return skipCounts;
+	}
+
+	/**
+	 * The ways to reduce the counts of multiple builds to one value.
+	 *
+	 * @author agent - initial API and implementation
+	 */
+	public enum Aggregation {
+
+		/**
+		 * The smallest value.
+		 */
+		MIN,
+
+		/**
+		 * The largest value.
+		 */
+		MAX,
+
+		/**
+		 * The average value.
+		 */
+		AVG;
+
+		/**
+		 * Parses an aggregation, ignoring case.
+		 *
+		 * @param aName
+		 *            the name of the aggregation
+		 * @param aDefault
+		 *            the aggregation to use if the name is null or unknown
+		 * @return the aggregation
+		 */
+		public static Aggregation parse(String aName, Aggregation aDefault) {
+			if (aName != null) {
+				for (Aggregation tempAggregation : values()) {
+					if (tempAggregation.name().equalsIgnoreCase(aName.trim())) {
+						return tempAggregation;
+					}
+				}
+			}
+			return aDefault;
+		}
+	}
+
+	/**
+	 * The minimum, maximum and average of one count over the builds of a point.
+	 *
+	 * @author agent - initial API and implementation
+	 */
+	public static class Range {
+
+		/**
+		 * The smallest value.
+		 */
+		private int min = Integer.MAX_VALUE;
+
+		/**
+		 * The largest value.
+		 */
+		private int max = Integer.MIN_VALUE;
+
+		/**
+		 * The sum of all values.
+		 */
+		private long total;
+
+		/**
+		 * The number of values.
+		 */
+		private int count;
+
+		private void add(int aValue) {
+			min = Math.min(min, aValue);
+			max = Math.max(max, aValue);
+			total += aValue;
+			count++;
+		}
+
+		public int getMin() {
+			return min;
+		}
+
+		public int getMax() {
+			return max;
+		}
+
+		public double getAverage() {
+			return (double) total / count;
+		}
+
+		/**
+		 * Returns the aggregated value.
+		 *
+		 * @param anAggregation
+		 *            the aggregation to apply
+		 * @return the value
+		 */
+		public Number get(Aggregation anAggregation) {
+			switch (anAggregation) {
+			case MIN:
+				return min;
+			case MAX:
+				return max;
+			default:
+				if (count == 1) {
+					return min;
+				}
+				return getAverage();
+			}
+		}
+	}
+}
@@ -0,0 +1,205 @@
+/*******************************************************************************
+ * Copyright (c) 2026 agent and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+/*
+ * Draws the Integrity trend chart of a job in the browser, from the JSON served by the "trendData" URL of the
+ * project action. The chart shows one page of builds at a time; older pages are fetched with the cursor returned by
+ * the server, so the cost of the chart doesn't depend on the length of the history.
+ *
+ * @author agent - initial API and implementation
+ */
+var integrityTrend = (function() {
+
+	var SVG_NS = "http://www.w3.org/2000/svg";
+
+	var WIDTH = 500;
+
+	var HEIGHT = 200;
+
+	var MARGIN_LEFT = 40;
+
+	var MARGIN_BOTTOM = 20;
+
+	var MARGIN_TOP = 5;
+
+	var PAGE_SIZE = 50;
+
+	var FIELDS = "number,passCount,failCount,skipCount,label,url";
+
+	/*
+	 * The series, stacked from bottom to top, in the colors of the Jenkins test trend.
+	 */
+	var SERIES = [
+		{ field: "failCount", color: "#ef2929", name: "failed" },
+		{ field: "skipCount", color: "#fce94f", name: "skipped" },
+		{ field: "passCount", color: "#729fcf", name: "passed" }
+	];
+
+	function createSvgElement(aName, someAttributes) {
+		var tempElement = document.createElementNS(SVG_NS, aName);
+		for (var tempName in someAttributes) {
+			if (someAttributes.hasOwnProperty(tempName)) {
+				tempElement.setAttribute(tempName, someAttributes[tempName]);
+			}
+		}
+		return tempElement;
+	}
+
+	function createLink(aText, anAction) {
+		var tempLink = document.createElement("a");
+		tempLink.href = "#";
+		tempLink.appendChild(document.createTextNode(aText));
+		tempLink.onclick = function() {
+			anAction();
+			return false;
+		};
+		return tempLink;
+	}
+
+	/*
+	 * Draws the given points (newest first) as stacked areas, oldest build on the left.
+	 */
+	function drawChart(someTarget, somePoints) {
+		var tempPoints = somePoints.slice().reverse();
+		var tempMax = 1;
+		for (var i = 0; i < tempPoints.length; i++) {
+			tempMax = Math.max(tempMax, tempPoints[i].passCount + tempPoints[i].failCount + tempPoints[i].skipCount);
+		}
+
+		var tempPlotWidth = WIDTH - MARGIN_LEFT;
+		var tempPlotHeight = HEIGHT - MARGIN_TOP - MARGIN_BOTTOM;
+		var tempStep = tempPoints.length > 1 ? tempPlotWidth / (tempPoints.length - 1) : 0;
+		var x = function(anIndex) {
+			return MARGIN_LEFT + anIndex * tempStep;
+		};
+		var y = function(aValue) {
+			return MARGIN_TOP + tempPlotHeight - aValue / tempMax * tempPlotHeight;
+		};
+
+		var tempSvg = createSvgElement("svg", { width: WIDTH, height: HEIGHT, "class": "integrity-trend-svg" });
+
+		var tempBase = [];
+		for (i = 0; i < tempPoints.length; i++) {
+			tempBase.push(0);
+		}
+		for (var s = 0; s < SERIES.length; s++) {
+			var tempUpper = [];
+			var tempPath = "";
+			for (i = 0; i < tempPoints.length; i++) {
+				tempUpper.push(tempBase[i] + tempPoints[i][SERIES[s].field]);
+				tempPath += (i == 0 ? "M" : "L") + x(i) + "," + y(tempUpper[i]);
+			}
+			if (tempPoints.length == 1) {
+				// A single build is drawn as a bar across the whole width
+				tempPath += "L" + (MARGIN_LEFT + tempPlotWidth) + "," + y(tempUpper[0]) + "L"
+						+ (MARGIN_LEFT + tempPlotWidth) + "," + y(tempBase[0]);
+			}
+			for (i = tempPoints.length - 1; i >= 0; i--) {
+				tempPath += "L" + x(i) + "," + y(tempBase[i]);
+			}
+			tempSvg.appendChild(createSvgElement("path", { d: tempPath + "Z", fill: SERIES[s].color }));
+			tempBase = tempUpper;
+		}
+
+		tempSvg.appendChild(createSvgElement("line", { x1: MARGIN_LEFT, y1: MARGIN_TOP, x2: MARGIN_LEFT,
+			y2: MARGIN_TOP + tempPlotHeight, stroke: "#888" }));
+		tempSvg.appendChild(createSvgElement("line", { x1: MARGIN_LEFT, y1: MARGIN_TOP + tempPlotHeight, x2: WIDTH,
+			y2: MARGIN_TOP + tempPlotHeight, stroke: "#888" }));
+		var tempMaxLabel = createSvgElement("text", { x: MARGIN_LEFT - 4, y: MARGIN_TOP + 10, "text-anchor": "end",
+			"font-size": "10" });
+		tempMaxLabel.appendChild(document.createTextNode(String(tempMax)));
+		tempSvg.appendChild(tempMaxLabel);
+
+		var tempBandWidth = tempPoints.length > 1 ? tempStep : tempPlotWidth;
+		for (i = 0; i < tempPoints.length; i++) {
+			var tempPoint = tempPoints[i];
+			// A transparent band per build shows its counts and leads to its results
+			var tempBandX = Math.max(MARGIN_LEFT, x(i) - tempBandWidth / 2);
+			var tempBand = createSvgElement("rect", { x: tempBandX, y: MARGIN_TOP,
+				width: Math.min(WIDTH, x(i) + tempBandWidth / 2) - tempBandX, height: tempPlotHeight,
+				fill: "transparent", style: "cursor: pointer" });
+			var tempTitle = createSvgElement("title", {});
+			tempTitle.appendChild(document.createTextNode(tempPoint.label + ": " + tempPoint.passCount + " passed, "
+					+ tempPoint.failCount + " failed, " + tempPoint.skipCount + " skipped"));
+			tempBand.appendChild(tempTitle);
+			tempBand.onclick = (function(aUrl) {
+				return function() {
+					window.location.href = aUrl;
+				};
+			})(tempPoint.url);
+			tempSvg.appendChild(tempBand);
+		}
+
+		if (tempPoints.length > 0) {
+			var tempFirstLabel = createSvgElement("text", { x: MARGIN_LEFT, y: HEIGHT - 5, "font-size": "10" });
+			tempFirstLabel.appendChild(document.createTextNode("#" + tempPoints[0].number));
+			tempSvg.appendChild(tempFirstLabel);
+			var tempLastLabel = createSvgElement("text", { x: WIDTH, y: HEIGHT - 5, "text-anchor": "end",
+				"font-size": "10" });
+			tempLastLabel.appendChild(document.createTextNode("#" + tempPoints[tempPoints.length - 1].number));
+			tempSvg.appendChild(tempLastLabel);
+		}
+
+		someTarget.appendChild(tempSvg);
+	}
+
+	/*
+	 * Loads and draws the page starting after the given cursor (null for the newest builds). The cursors of the pages
+	 * shown before are kept to navigate back to newer builds.
+	 */
+	function showPage(aContainer, aDataUrl, aCursor, someNewerCursors) {
+		var tempRequest = new XMLHttpRequest();
+		var tempUrl = aDataUrl + "?fields=" + FIELDS + "&limit=" + PAGE_SIZE
+				+ (aCursor != null ? "&cursor=" + aCursor : "");
+		tempRequest.open("GET", tempUrl, true);
+		tempRequest.onreadystatechange = function() {
+			if (tempRequest.readyState != 4) {
+				return;
+			}
+			while (aContainer.firstChild) {
+				aContainer.removeChild(aContainer.firstChild);
+			}
+			if (tempRequest.status != 200) {
+				aContainer.appendChild(document.createTextNode("[Integrity Test Results Trend Chart unavailable]"));
+				return;
+			}
+
+			var tempData = JSON.parse(tempRequest.responseText);
+			drawChart(aContainer, tempData.points);
+
+			var tempNavigation = document.createElement("div");
+			tempNavigation.className = "integrity-trend-navigation";
+			if (tempData.nextCursor != null) {
+				tempNavigation.appendChild(createLink("« older", function() {
+					showPage(aContainer, aDataUrl, tempData.nextCursor, someNewerCursors.concat([ aCursor ]));
+				}));
+			}
+			if (someNewerCursors.length > 0) {
+				if (tempNavigation.firstChild) {
+					tempNavigation.appendChild(document.createTextNode(" "));
+				}
+				tempNavigation.appendChild(createLink("newer »", function() {
+					showPage(aContainer, aDataUrl, someNewerCursors[someNewerCursors.length - 1],
+							someNewerCursors.slice(0, someNewerCursors.length - 1));
+				}));
+			}
+			aContainer.appendChild(tempNavigation);
+		};
+		tempRequest.send(null);
+	}
+
+	return {
+
+		/*
+		 * Draws the chart of the newest builds into the element with the given ID.
+		 */
+		init: function(anElementId, aDataUrl) {
+			showPage(document.getElementById(anElementId), aDataUrl, null, []);
+		}
+	};
+})();
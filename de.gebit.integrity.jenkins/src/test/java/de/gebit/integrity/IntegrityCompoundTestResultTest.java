@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * Copyright (c) 2026 agent and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package de.gebit.integrity;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import hudson.tasks.test.TestResult;
+
+/**
+ * Tests {@link IntegrityCompoundTestResult}.
+ *
+ * @author agent - initial API and implementation
+ */
+public class IntegrityCompoundTestResultTest {
+
+	/**
+	 * The number of children added in the ordering test.
+	 */
+	private static final int CHILD_COUNT = 5000;
+
+	/**
+	 * The numbers of children the benchmark is run with.
+	 */
+	private static final int[] BENCHMARK_CHILD_COUNTS = { 1000, 5000 };
+
+	/**
+	 * The number of measured repetitions of the benchmark; the fastest one counts, to reduce noise from GC and JIT.
+	 */
+	private static final int REPETITION_COUNT = 5;
+
+	/**
+	 * Adding many children at once must yield the same order as adding them one by one.
+	 */
+	@Test
+	public void testAddChildrenKeepsOrderOfAddChild() {
+		assertEquals(getNames(addOneByOne(createChildren(CHILD_COUNT))),
+				getNames(addAtOnce(createChildren(CHILD_COUNT))));
+	}
+
+	/**
+	 * Compares the time taken to add children one by one and at once. This is a benchmark to be run manually, not a
+	 * test, since timings on build machines are too unreliable to assert on.
+	 *
+	 * @param someArguments
+	 *            ignored
+	 */
+	public static void main(String[] someArguments) {
+		for (int tempChildCount : BENCHMARK_CHILD_COUNTS) {
+			// warm up both code paths
+			addOneByOne(createChildren(tempChildCount));
+			addAtOnce(createChildren(tempChildCount));
+
+			long tempOneByOneTime = Long.MAX_VALUE;
+			long tempAtOnceTime = Long.MAX_VALUE;
+			for (int i = 0; i < REPETITION_COUNT; i++) {
+				List<IntegrityTestResult> tempChildren = createChildren(tempChildCount);
+				long tempStart = System.nanoTime();
+				addOneByOne(tempChildren);
+				tempOneByOneTime = Math.min(tempOneByOneTime, System.nanoTime() - tempStart);
+
+				tempChildren = createChildren(tempChildCount);
+				tempStart = System.nanoTime();
+				addAtOnce(tempChildren);
+				tempAtOnceTime = Math.min(tempAtOnceTime, System.nanoTime() - tempStart);
+			}
+			System.out.println(tempChildCount + " children: addChild " + tempOneByOneTime / 1000 + "us, addChildren "
+					+ tempAtOnceTime / 1000 + "us");
+		}
+	}
+
+	/**
+	 * Creates children with random display names, many of which are equal, to exercise the ordering of equal names.
+	 * The same sequence of children is created on every call.
+	 */
+	private static List<IntegrityTestResult> createChildren(int aCount) {
+		Random tempRandom = new Random(42);
+		List<IntegrityTestResult> tempChildren = new ArrayList<IntegrityTestResult>(aCount);
+		for (int i = 0; i < aCount; i++) {
+			tempChildren.add(new IntegrityTestResult(null, "child" + i, "Suite " + tempRandom.nextInt(aCount / 4),
+					null, "text/xml;charset=UTF-8", 1, 0, 0, 0));
+		}
+		return tempChildren;
+	}
+
+	private static IntegrityCompoundTestResult addOneByOne(List<IntegrityTestResult> someChildren) {
+		IntegrityCompoundTestResult tempResult = new IntegrityCompoundTestResult();
+		for (IntegrityTestResult tempChild : someChildren) {
+			tempResult.addChild(tempChild);
+		}
+		return tempResult;
+	}
+
+	private static IntegrityCompoundTestResult addAtOnce(List<IntegrityTestResult> someChildren) {
+		IntegrityCompoundTestResult tempResult = new IntegrityCompoundTestResult();
+		tempResult.addChildren(someChildren);
+		return tempResult;
+	}
+
+	private static List<String> getNames(IntegrityCompoundTestResult aResult) {
+		List<String> tempNames = new ArrayList<String>();
+		for (TestResult tempChild : aResult.getChildren()) {
+			tempNames.add(tempChild.getName());
+		}
+		return tempNames;
+	}
+}
@@ -0,0 +1,73 @@
+/*******************************************************************************
+ * Copyright (c) 2026 agent and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package de.gebit.integrity;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+/**
+ * Tests {@link IntegrityDictionaryCodec} with a sample report, which was not among the reports the dictionary was
+ * built from.
+ *
+ * @author agent - initial API and implementation
+ */
+public class IntegrityDictionaryCodecTest {
+
+	/**
+	 * The name of the sample report resource.
+	 */
+	private static final String SAMPLE_REPORT = "sampleReport.xml";
+
+	/**
+	 * The sample report must survive the round trip.
+	 */
+	@Test
+	public void testRoundTrip() throws IOException {
+		byte[] tempReport = loadSampleReport();
+		byte[] tempCompressed = compress(IntegrityRawDataCodec.DICTIONARY, tempReport);
+		try (InputStream tempDecompressor = IntegrityRawDataCodec.DICTIONARY
+				.createDecompressor(new ByteArrayInputStream(tempCompressed))) {
+			assertArrayEquals(tempReport, IOUtils.toByteArray(tempDecompressor));
+		}
+	}
+
+	/**
+	 * The dictionary must make the sample report smaller than plain GZIP at the default level does.
+	 */
+	@Test
+	public void testBeatsGzip() throws IOException {
+		byte[] tempReport = loadSampleReport();
+		int tempDictionarySize = compress(IntegrityRawDataCodec.DICTIONARY, tempReport).length;
+		int tempGzipSize = compress(IntegrityRawDataCodec.GZIP, tempReport).length;
+		assertTrue("Dictionary: " + tempDictionarySize + " bytes, GZIP: " + tempGzipSize + " bytes",
+				tempDictionarySize < tempGzipSize);
+	}
+
+	private static byte[] compress(IntegrityRawDataCodec aCodec, byte[] someData) throws IOException {
+		ByteArrayOutputStream tempCompressed = new ByteArrayOutputStream();
+		try (OutputStream tempCompressor = aCodec.createCompressor(tempCompressed, someData.length)) {
+			tempCompressor.write(someData);
+		}
+		return tempCompressed.toByteArray();
+	}
+
+	private static byte[] loadSampleReport() throws IOException {
+		try (InputStream tempStream = IntegrityDictionaryCodecTest.class.getResourceAsStream(SAMPLE_REPORT)) {
+			return IOUtils.toByteArray(tempStream);
+		}
+	}
+}
@@ -0,0 +1,179 @@
+/*******************************************************************************
+ * Copyright (c) 2026 agent and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package de.gebit.integrity;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+/**
+ * Tests {@link IntegrityLz4Codec} by compressing and decompressing data which exercises the edge cases of the block
+ * format.
+ *
+ * @author agent - initial API and implementation
+ */
+public class IntegrityLz4CodecTest {
+
+	/**
+	 * The size of the chunks in which data is written to the compressor, chosen to not divide the block size.
+	 */
+	private static final int WRITE_CHUNK_SIZE = 10000;
+
+	/**
+	 * Empty data must survive the round trip.
+	 */
+	@Test
+	public void testEmpty() throws IOException {
+		assertArrayEquals(new byte[0], roundTrip(new byte[0]));
+	}
+
+	/**
+	 * Data too short for any match is stored as literals only.
+	 */
+	@Test
+	public void testShort() throws IOException {
+		for (int i = 1; i <= 16; i++) {
+			byte[] tempData = createRepetitiveData(i, 1);
+			assertArrayEquals("Length " + i, tempData, roundTrip(tempData));
+		}
+	}
+
+	/**
+	 * Random data, which has no matches, must survive the round trip, also across several blocks.
+	 */
+	@Test
+	public void testIncompressible() throws IOException {
+		for (int tempLength : new int[] { 1000, IntegrityLz4Codec.BLOCK_SIZE, 3 * IntegrityLz4Codec.BLOCK_SIZE + 17 }) {
+			byte[] tempData = createRandomData(tempLength);
+			assertArrayEquals("Length " + tempLength, tempData, roundTrip(tempData));
+		}
+	}
+
+	/**
+	 * Data filling whole blocks exactly, or missing or exceeding that by one byte, must survive the round trip.
+	 */
+	@Test
+	public void testBlockBoundaries() throws IOException {
+		for (int tempBlockCount = 1; tempBlockCount <= 3; tempBlockCount++) {
+			for (int tempDelta = -1; tempDelta <= 1; tempDelta++) {
+				int tempLength = tempBlockCount * IntegrityLz4Codec.BLOCK_SIZE + tempDelta;
+				byte[] tempData = createTextData(tempLength);
+				assertArrayEquals("Length " + tempLength, tempData, roundTrip(tempData));
+			}
+		}
+	}
+
+	/**
+	 * Runs of a single byte produce matches spanning the whole block, whose lengths need many extra length bytes.
+	 */
+	@Test
+	public void testLongMatches() throws IOException {
+		byte[] tempData = new byte[2 * IntegrityLz4Codec.BLOCK_SIZE + 1234];
+		for (int i = IntegrityLz4Codec.BLOCK_SIZE / 2; i < tempData.length; i++) {
+			tempData[i] = 'x';
+		}
+		byte[] tempCompressed = compress(tempData);
+		assertTrue("Compressed to " + tempCompressed.length + " bytes", tempCompressed.length < tempData.length / 100);
+		assertArrayEquals(tempData, decompress(tempCompressed));
+	}
+
+	/**
+	 * Repeating patterns shorter than a match are copied from a source which overlaps the target.
+	 */
+	@Test
+	public void testOverlappingCopies() throws IOException {
+		for (int tempPeriod = 1; tempPeriod <= 17; tempPeriod++) {
+			byte[] tempData = createRepetitiveData(100000, tempPeriod);
+			byte[] tempCompressed = compress(tempData);
+			assertTrue("Period " + tempPeriod + " compressed to " + tempCompressed.length + " bytes",
+					tempCompressed.length < tempData.length / 50);
+			assertArrayEquals("Period " + tempPeriod, tempData, decompress(tempCompressed));
+		}
+	}
+
+	/**
+	 * Data written byte by byte must yield the same stream as data written in chunks.
+	 */
+	@Test
+	public void testSingleByteWrites() throws IOException {
+		byte[] tempData = createTextData(IntegrityLz4Codec.BLOCK_SIZE + 100);
+		ByteArrayOutputStream tempCompressed = new ByteArrayOutputStream();
+		try (OutputStream tempCompressor = IntegrityLz4Codec.createCompressor(tempCompressed)) {
+			for (byte tempByte : tempData) {
+				tempCompressor.write(tempByte);
+			}
+		}
+		assertArrayEquals(compress(tempData), tempCompressed.toByteArray());
+
+		InputStream tempDecompressor = IntegrityLz4Codec
+				.createDecompressor(new ByteArrayInputStream(tempCompressed.toByteArray()));
+		for (int i = 0; i < tempData.length; i++) {
+			assertEquals("Byte " + i, tempData[i] & 0xff, tempDecompressor.read());
+		}
+		assertEquals(-1, tempDecompressor.read());
+	}
+
+	private static byte[] roundTrip(byte[] someData) throws IOException {
+		return decompress(compress(someData));
+	}
+
+	private static byte[] compress(byte[] someData) throws IOException {
+		ByteArrayOutputStream tempCompressed = new ByteArrayOutputStream();
+		try (OutputStream tempCompressor = IntegrityLz4Codec.createCompressor(tempCompressed)) {
+			for (int i = 0; i < someData.length; i += WRITE_CHUNK_SIZE) {
+				tempCompressor.write(someData, i, Math.min(WRITE_CHUNK_SIZE, someData.length - i));
+			}
+		}
+		return tempCompressed.toByteArray();
+	}
+
+	private static byte[] decompress(byte[] someCompressedData) throws IOException {
+		try (InputStream tempDecompressor = IntegrityLz4Codec
+				.createDecompressor(new ByteArrayInputStream(someCompressedData))) {
+			return IOUtils.toByteArray(tempDecompressor);
+		}
+	}
+
+	private static byte[] createRandomData(int aLength) {
+		byte[] tempData = new byte[aLength];
+		new Random(42).nextBytes(tempData);
+		return tempData;
+	}
+
+	private static byte[] createRepetitiveData(int aLength, int aPeriod) {
+		byte[] tempData = new byte[aLength];
+		for (int i = 0; i < aLength; i++) {
+			tempData[i] = (byte) ('a' + i % aPeriod);
+		}
+		return tempData;
+	}
+
+	/**
+	 * Creates report-like text with many short and medium matches at varying distances.
+	 */
+	private static byte[] createTextData(int aLength) {
+		Random tempRandom = new Random(42);
+		StringBuilder tempText = new StringBuilder(aLength + 100);
+		while (tempText.length() < aLength) {
+			tempText.append("<test name=\"t").append(tempRandom.nextInt(10000)).append("\"><result type=\"")
+					.append(tempRandom.nextBoolean() ? "success" : "failure").append("\"/></test>\n");
+		}
+		return tempText.substring(0, aLength).getBytes(StandardCharsets.UTF_8);
+	}
+}
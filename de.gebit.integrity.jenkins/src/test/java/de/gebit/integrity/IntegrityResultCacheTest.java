@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Copyright (c) 2026 agent and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package de.gebit.integrity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link IntegrityResultCache}.
+ *
+ * @author agent - initial API and implementation
+ */
+public class IntegrityResultCacheTest {
+
+	/**
+	 * The number of threads asking for the same results at the same time.
+	 */
+	private static final int THREAD_COUNT = 32;
+
+	/**
+	 * The number of rounds the stress test is repeated, each with a fresh build directory.
+	 */
+	private static final int ROUND_COUNT = 20;
+
+	/**
+	 * Many threads asking for the results of a build which isn't cached yet must share a single load.
+	 */
+	@Test
+	public void testConcurrentGetLoadsOnce() throws Exception {
+		ExecutorService tempExecutor = Executors.newFixedThreadPool(THREAD_COUNT);
+		try {
+			for (int tempRound = 0; tempRound < ROUND_COUNT; tempRound++) {
+				File tempBuildDirectory = new File("integrity-result-cache-test-" + System.nanoTime());
+				final AtomicInteger tempLoadCount = new AtomicInteger();
+				final Callable<IntegrityResultIndex> tempLoader = new Callable<IntegrityResultIndex>() {
+
+					@Override
+					public IntegrityResultIndex call() throws Exception {
+						tempLoadCount.incrementAndGet();
+						// Keep the load in progress long enough for the other threads to run into it
+						Thread.sleep(50);
+						return new IntegrityResultIndex(Collections.<IntegrityTestResult> emptyList());
+					}
+				};
+
+				List<Future<IntegrityResultIndex>> tempResults = startConcurrentGets(tempExecutor, tempBuildDirectory,
+						tempLoader);
+				IntegrityResultIndex tempFirst = tempResults.get(0).get(10, TimeUnit.SECONDS);
+				for (Future<IntegrityResultIndex> tempResult : tempResults) {
+					assertSame("All threads must get the same results", tempFirst,
+							tempResult.get(10, TimeUnit.SECONDS));
+				}
+				assertEquals("Number of loads in round " + tempRound, 1, tempLoadCount.get());
+
+				// Now the results are cached, so no further load happens
+				assertSame(tempFirst, IntegrityResultCache.getInstance().get(tempBuildDirectory, tempLoader));
+				assertEquals(1, tempLoadCount.get());
+
+				IntegrityResultCache.getInstance().remove(tempBuildDirectory);
+			}
+		} finally {
+			tempExecutor.shutdownNow();
+		}
+	}
+
+	private static List<Future<IntegrityResultIndex>> startConcurrentGets(ExecutorService anExecutor,
+			final File aBuildDirectory, final Callable<IntegrityResultIndex> aLoader) throws InterruptedException {
+		final CountDownLatch tempReady = new CountDownLatch(THREAD_COUNT);
+		final CountDownLatch tempStart = new CountDownLatch(1);
+		List<Future<IntegrityResultIndex>> tempResults = new ArrayList<Future<IntegrityResultIndex>>();
+		for (int i = 0; i < THREAD_COUNT; i++) {
+			tempResults.add(anExecutor.submit(new Callable<IntegrityResultIndex>() {
+
+				@Override
+				public IntegrityResultIndex call() throws Exception {
+					tempReady.countDown();
+					tempStart.await();
+					return IntegrityResultCache.getInstance().get(aBuildDirectory, aLoader);
+				}
+			}));
+		}
+
+		// Release all threads at once, so they hit the cache at the same time
+		tempReady.await();
+		tempStart.countDown();
+		return tempResults;
+	}
+}